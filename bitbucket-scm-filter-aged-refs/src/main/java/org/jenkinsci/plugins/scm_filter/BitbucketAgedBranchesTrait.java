@@ -33,7 +33,8 @@ public class BitbucketAgedBranchesTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context, withBudget(new ExcludeOldBranchesSCMHeadFilter(retentionDays)), REF_TYPE);
         }
     }
 
@@ -76,7 +77,7 @@ public class BitbucketAgedBranchesTrait extends AgedTypeRefsTrait {
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return BitbucketFilterRefUtils.isBranchExcluded(
@@ -10,11 +10,12 @@ import jenkins.scm.api.trait.SCMSourceContext;
 import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.impl.trait.Selection;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.BitbucketFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-public class BitbucketAgedPullRequestsTrait extends AgedTypeRefsTrait {
+public class BitbucketAgedPullRequestsTrait extends AgedPullRequestsTrait {
     private static final RefType REF_TYPE = RefType.PULL_REQUEST;
 
     /**
@@ -30,7 +31,10 @@ public class BitbucketAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays, pullRequestAgeSource)),
+                    REF_TYPE);
         }
     }
 
@@ -38,7 +42,7 @@ public class BitbucketAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Selection
     @Symbol("bitbucketAgedPullRequestsTrait")
     @SuppressWarnings("unused") // instantiated by Jenkins
-    public static class DescriptorImpl extends AgedRefsDescriptorImpl {
+    public static class DescriptorImpl extends AgedPullRequestsDescriptorImpl {
 
         @Override
         public Class<? extends SCMSourceContext> getContextClass() {
@@ -68,18 +72,19 @@ public class BitbucketAgedPullRequestsTrait extends AgedTypeRefsTrait {
      */
     private static class ExcludeOldPullRequestsSCMHeadFilter extends ExcludeReferencesSCMHeadFilter {
 
-        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof PullRequestSCMHead) {
                 return BitbucketFilterRefUtils.isPullRequestExcluded(
                         (BitbucketSCMSourceRequest) scmSourceRequest,
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource());
             }
             return false;
         }
@@ -15,6 +15,8 @@ import jenkins.scm.api.trait.SCMSourceContext;
 import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.impl.trait.Selection;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.BitbucketFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -36,7 +38,10 @@ public class BitbucketAgedRefsTrait extends AgedRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(new ExcludeOldBranchesSCMHeadFilter(retentionDays, pullRequestAgeSource)),
+                    RefType.values());
         }
     }
 
@@ -65,12 +70,12 @@ public class BitbucketAgedRefsTrait extends AgedRefsTrait {
      */
     private static class ExcludeOldBranchesSCMHeadFilter extends ExcludeBranchesSCMHeadFilter {
 
-        ExcludeOldBranchesSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldBranchesSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return BitbucketFilterRefUtils.isBranchExcluded(
@@ -81,7 +86,8 @@ public class BitbucketAgedRefsTrait extends AgedRefsTrait {
                 return BitbucketFilterRefUtils.isPullRequestExcluded(
                         (BitbucketSCMSourceRequest) scmSourceRequest,
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource());
             } else if (scmHead instanceof BitbucketTagSCMHead) {
                 return BitbucketFilterRefUtils.isTagExcluded(
                         (BitbucketTagSCMHead) scmHead, getAcceptableDateTimeThreshold());
@@ -30,7 +30,8 @@ public class BitbucketAgedTagsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldTagsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context, withBudget(new ExcludeOldTagsSCMHeadFilter(retentionDays)), REF_TYPE);
         }
     }
 
@@ -73,7 +74,7 @@ public class BitbucketAgedTagsTrait extends AgedTypeRefsTrait {
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BitbucketTagSCMHead) {
                 return BitbucketFilterRefUtils.isTagExcluded(
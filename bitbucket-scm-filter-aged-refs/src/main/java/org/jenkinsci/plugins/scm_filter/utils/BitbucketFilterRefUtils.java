@@ -5,37 +5,56 @@ import com.cloudbees.jenkins.plugins.bitbucket.BitbucketTagSCMHead;
 import com.cloudbees.jenkins.plugins.bitbucket.BranchSCMHead;
 import com.cloudbees.jenkins.plugins.bitbucket.PullRequestSCMHead;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
+import java.util.Set;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 
 public final class BitbucketFilterRefUtils {
     public static boolean isBranchExcluded(
             @NonNull BitbucketSCMSourceRequest scmSourceRequest,
             @NonNull BranchSCMHead scmHead,
             long acceptableDateTimeThreshold) throws IOException, InterruptedException {
-        Iterable<BitbucketBranch> branches = scmSourceRequest.getBranches();
-        for (BitbucketBranch branch : branches) {
-            long branchTS = branch.getDateMillis();
-            if (branch.getName().equals(scmHead.getName())) {
-                return branchTS < acceptableDateTimeThreshold;
-            }
+        RefTimestampIndex.Ref branch = RefTimestampIndex.of(scmSourceRequest)
+                .findBranch(scmHead.getName(), builder -> {
+                    Set<String> requested = scmSourceRequest.getRequestedOriginBranchNames();
+                    for (BitbucketBranch b : scmSourceRequest.getBranches()) {
+                        if (TargetedHeads.isRequested(requested, b.getName())) {
+                            builder.addCommit(b.getName(), b.getRawNode(), b.getDateMillis(), null);
+                        }
+                    }
+                });
+        if (branch == null) {
+            return false;
         }
-        return false;
+        return branch.getTimestamp() < acceptableDateTimeThreshold;
     }
 
     public static boolean isPullRequestExcluded(
             @NonNull BitbucketSCMSourceRequest scmSourceRequest,
             @NonNull PullRequestSCMHead scmHead,
-            long acceptableDateTimeThreshold) throws IOException, InterruptedException {
-        Iterable<BitbucketPullRequest> pulls = scmSourceRequest.getPullRequests();
-        for (BitbucketPullRequest pull : pulls) {
-            if (pull.getSource().getBranch().getName().equals(scmHead.getName())) {
-                long pullTS = pull.getSource().getCommit().getDateMillis();
-                return pullTS < acceptableDateTimeThreshold;
-            }
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource)
+            throws IOException, InterruptedException {
+        // the pull request listing provides the head commit date, which is used whatever the configured age source
+        RefTimestampIndex.Ref pull = RefTimestampIndex.of(scmSourceRequest)
+                .findPullRequest(Long.parseLong(scmHead.getId()), builder -> {
+                    Set<String> requested = scmSourceRequest.getRequestedPullRequestNumbers();
+                    for (BitbucketPullRequest p : scmSourceRequest.getPullRequests()) {
+                        if (TargetedHeads.isRequested(requested, p.getId())) {
+                            BitbucketCommit commit = p.getSource().getCommit();
+                            builder.addCommit(
+                                    Long.parseLong(p.getId()), commit.getHash(), commit.getDateMillis(), null);
+                        }
+                    }
+                });
+        if (pull == null) {
+            return false;
         }
-        return false;
+        return pull.getTimestamp() < acceptableDateTimeThreshold;
     }
 
     public static boolean isTagExcluded(@NonNull BitbucketTagSCMHead scmHead, long acceptableDateTimeThreshold) {
@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.scm_filter;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMSource;
+import hudson.ExtensionList;
 import java.io.IOException;
 import java.io.InputStream;
 import jenkins.model.Jenkins;
@@ -26,4 +27,12 @@ public class BitbucketAgedPullRequestsTraitTest {
                 .isInstanceOf(BitbucketAgedPullRequestsTrait.class)
                 .hasFieldOrPropertyWithValue("retentionDays", 30);
     }
+
+    @Test
+    void hidePullRequestAgeSource(JenkinsRule ignoredRule) {
+        // Bitbucket pull requests always take their age from the head commit date of the listing
+        assertThat(ExtensionList.lookupSingleton(BitbucketAgedPullRequestsTrait.DescriptorImpl.class)
+                        .isPullRequestAgeSourceSupported())
+                .isFalse();
+    }
 }
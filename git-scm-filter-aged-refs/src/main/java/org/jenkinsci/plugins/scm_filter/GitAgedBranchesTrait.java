@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import java.io.IOException;
+import jenkins.plugins.git.GitBranchSCMHead;
+import jenkins.plugins.git.GitSCMSource;
+import jenkins.plugins.git.GitSCMSourceContext;
+import jenkins.plugins.git.GitSCMSourceRequest;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.trait.SCMSourceContext;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import jenkins.scm.impl.trait.Selection;
+import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
+import org.jenkinsci.plugins.scm_filter.utils.GitFilterRefUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+public class GitAgedBranchesTrait extends AgedTypeRefsTrait {
+    private static final RefType REF_TYPE = RefType.BRANCH;
+
+    /**
+     * Constructor for stapler.
+     *
+     * @param retentionDays retention period in days
+     */
+    @DataBoundConstructor
+    public GitAgedBranchesTrait(String retentionDays) {
+        super(retentionDays);
+    }
+
+    @Override
+    protected void decorateContext(SCMSourceContext<?, ?> context) {
+        if (retentionDays > 0) {
+            AgedRefsFilterCoordinator.register(
+                    context, withBudget(new ExcludeOldBranchesSCMHeadFilter(retentionDays)), REF_TYPE);
+        }
+    }
+
+    @Extension
+    @Selection
+    @Symbol("gitAgedBranchesTrait")
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class DescriptorImpl extends AgedRefsDescriptorImpl {
+
+        @Override
+        public Class<? extends SCMSourceContext> getContextClass() {
+            return GitSCMSourceContext.class;
+        }
+
+        @Override
+        public Class<? extends SCMSource> getSourceClass() {
+            return GitSCMSource.class;
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Filter branches by age";
+        }
+
+        @Override
+        @NonNull
+        public String getRefName() {
+            return REF_TYPE.getName();
+        }
+    }
+
+    /**
+     * Filter that excludes branches according to their last commit modification date and the defined retentionDays.
+     */
+    private static class ExcludeOldBranchesSCMHeadFilter extends ExcludeReferencesSCMHeadFilter {
+
+        ExcludeOldBranchesSCMHeadFilter(int retentionDays) {
+            super(retentionDays);
+        }
+
+        @Override
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+                throws IOException, InterruptedException {
+            if (scmHead instanceof GitBranchSCMHead) {
+                return GitFilterRefUtils.isBranchExcluded(
+                        (GitSCMSourceRequest) scmSourceRequest,
+                        getSource(),
+                        (GitBranchSCMHead) scmHead,
+                        getAcceptableDateTimeThreshold());
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import jenkins.plugins.git.GitBranchSCMHead;
+import jenkins.plugins.git.GitSCMSourceRequest;
+import jenkins.plugins.git.GitTagSCMHead;
+import jenkins.scm.api.SCMSource;
+import org.eclipse.jgit.lib.Constants;
+
+public final class GitFilterRefUtils {
+
+    private GitFilterRefUtils() {}
+
+    /**
+     * Decides a branch from the date of its head commit in the cache repository of the source, which the source
+     * fetched right before listing its branches. Branches whose head cannot be read locally are not excluded.
+     */
+    public static boolean isBranchExcluded(
+            @NonNull GitSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            @NonNull GitBranchSCMHead scmHead,
+            long acceptableDateTimeThreshold)
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref branch = RefTimestampIndex.of(scmSourceRequest)
+                .findBranch(scmHead.getName(), branches(scmSourceRequest, source));
+        if (branch == null || branch.getTimestamp() == RefTimestampIndex.UNKNOWN) {
+            return false;
+        }
+        return branch.getTimestamp() < acceptableDateTimeThreshold;
+    }
+
+    /**
+     * Indexes the remote branches fetched into the cache repository, reading the dates of all their heads with a
+     * single walk rather than one lookup per branch.
+     */
+    private static RefTimestampIndex.Populator<String> branches(
+            GitSCMSourceRequest scmSourceRequest, @CheckForNull SCMSource source) {
+        return builder -> {
+            File repository = LocalCommitDates.getCacheRepository(source);
+            if (repository == null) {
+                return;
+            }
+            Map<String, String> heads = LocalCommitDates.getRefs(
+                    repository, Constants.R_REMOTES + scmSourceRequest.remoteName() + "/");
+            Map<String, Long> dates = LocalCommitDates.getCommitDates(repository, heads.values());
+            heads.forEach((name, sha) ->
+                    builder.addCommit(name, sha, dates.getOrDefault(sha, RefTimestampIndex.UNKNOWN), null));
+        };
+    }
+
+    public static boolean isTagExcluded(@NonNull GitTagSCMHead scmHead, long acceptableDateTimeThreshold) {
+        long tagTS = scmHead.getTimestamp();
+        return tagTS < acceptableDateTimeThreshold;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import hudson.util.StreamTaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import jenkins.model.Jenkins;
+import jenkins.plugins.git.GitSCMSource;
+import jenkins.plugins.git.traits.BranchDiscoveryTrait;
+import jenkins.scm.api.SCMHead;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class GitAgedBranchesTraitTest {
+
+    private GitSCMSource load(String file) throws IOException {
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/" + file)) {
+            return (GitSCMSource) Jenkins.XSTREAM2.fromXML(res);
+        }
+    }
+
+    @Test
+    void restoreData(JenkinsRule ignoredRule) throws IOException {
+        GitSCMSource instance = load("exclude_branches_thirty_days.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitAgedBranchesTrait.class)
+                .hasFieldOrPropertyWithValue("retentionDays", 30);
+    }
+
+    @Test
+    void excludeStaleBranches(JenkinsRule ignoredRule, @TempDir File remote) throws Exception {
+        Instant now = Instant.now();
+        try (Git git = Git.init().setDirectory(remote).setInitialBranch("main").call()) {
+            commit(git, now.minus(60, ChronoUnit.DAYS));
+            git.branchCreate().setName("stale").call();
+            commit(git, now);
+        }
+        GitSCMSource source = new GitSCMSource(remote.getAbsolutePath());
+        source.setTraits(List.of(new BranchDiscoveryTrait(), new GitAgedBranchesTrait("30")));
+
+        assertThat(source.fetch(StreamTaskListener.fromStdout()))
+                .extracting(SCMHead::getName)
+                .containsExactly("main");
+    }
+
+    private static void commit(Git git, Instant when) throws Exception {
+        PersonIdent ident = new PersonIdent("Jane Doe", "jane@example.com", when, ZoneOffset.UTC);
+        git.commit()
+                .setMessage("Commit of " + when)
+                .setAllowEmpty(true)
+                .setAuthor(ident)
+                .setCommitter(ident)
+                .call();
+    }
+}
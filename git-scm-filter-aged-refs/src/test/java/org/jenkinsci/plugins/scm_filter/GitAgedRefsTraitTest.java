@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import jenkins.model.Jenkins;
+import jenkins.plugins.git.GitSCMSource;
+import org.junit.jupiter.api.Test;
+
+class GitAgedRefsTraitTest {
+
+    private GitSCMSource load(String file) throws IOException {
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/" + file)) {
+            return (GitSCMSource) Jenkins.XSTREAM2.fromXML(res);
+        }
+    }
+
+    @Test
+    void restoreData() throws IOException {
+        GitSCMSource instance = load("exclude_thirty_days.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitAgedRefsTrait.class)
+                .hasFieldOrPropertyWithValue("retentionDays", 30);
+    }
+}
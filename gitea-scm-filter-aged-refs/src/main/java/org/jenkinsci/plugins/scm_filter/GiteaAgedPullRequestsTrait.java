@@ -13,11 +13,12 @@ import org.jenkinsci.plugin.gitea.GiteaSCMSource;
 import org.jenkinsci.plugin.gitea.GiteaSCMSourceContext;
 import org.jenkinsci.plugin.gitea.GiteaSCMSourceRequest;
 import org.jenkinsci.plugin.gitea.PullRequestSCMHead;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GiteaFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-public class GiteaAgedPullRequestsTrait extends AgedTypeRefsTrait {
+public class GiteaAgedPullRequestsTrait extends AgedPullRequestsTrait {
     private static final RefType REF_TYPE = RefType.PULL_REQUEST;
 
     /**
@@ -33,7 +34,10 @@ public class GiteaAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays, pullRequestAgeSource)),
+                    REF_TYPE);
         }
     }
 
@@ -41,7 +45,7 @@ public class GiteaAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Selection
     @Symbol("giteaAgedPullRequestsTrait")
     @SuppressWarnings("unused") // instantiated by Jenkins
-    public static class DescriptorImpl extends AgedRefsDescriptorImpl {
+    public static class DescriptorImpl extends AgedPullRequestsDescriptorImpl {
 
         @Override
         public Class<? extends SCMSourceContext> getContextClass() {
@@ -71,18 +75,19 @@ public class GiteaAgedPullRequestsTrait extends AgedTypeRefsTrait {
      */
     private static class ExcludeOldPullRequestsSCMHeadFilter extends ExcludeReferencesSCMHeadFilter {
 
-        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof PullRequestSCMHead) {
                 return GiteaFilterRefUtils.isPullRequestExcluded(
                         (GiteaSCMSourceRequest) scmSourceRequest,
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource());
             }
             return false;
         }
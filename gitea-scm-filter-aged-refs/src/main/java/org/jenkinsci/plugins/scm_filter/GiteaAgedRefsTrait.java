@@ -15,6 +15,8 @@ import org.jenkinsci.plugin.gitea.GiteaSCMSourceContext;
 import org.jenkinsci.plugin.gitea.GiteaSCMSourceRequest;
 import org.jenkinsci.plugin.gitea.PullRequestSCMHead;
 import org.jenkinsci.plugin.gitea.TagSCMHead;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GiteaFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -36,7 +38,10 @@ public class GiteaAgedRefsTrait extends AgedRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(new ExcludeOldBranchesSCMHeadFilter(retentionDays, pullRequestAgeSource)),
+                    RefType.values());
         }
     }
 
@@ -65,12 +70,12 @@ public class GiteaAgedRefsTrait extends AgedRefsTrait {
      */
     private static class ExcludeOldBranchesSCMHeadFilter extends ExcludeBranchesSCMHeadFilter {
 
-        ExcludeOldBranchesSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldBranchesSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return GiteaFilterRefUtils.isBranchExcluded(
@@ -81,7 +86,8 @@ public class GiteaAgedRefsTrait extends AgedRefsTrait {
                 return GiteaFilterRefUtils.isPullRequestExcluded(
                         (GiteaSCMSourceRequest) scmSourceRequest,
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource());
             } else if (scmHead instanceof TagSCMHead) {
                 return GiteaFilterRefUtils.isTagExcluded((TagSCMHead) scmHead, getAcceptableDateTimeThreshold());
             }
@@ -1,40 +1,57 @@
 package org.jenkinsci.plugins.scm_filter.utils;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.io.IOException;
-import java.util.Optional;
-import java.util.stream.StreamSupport;
+import java.util.Set;
 import org.jenkinsci.plugin.gitea.BranchSCMHead;
 import org.jenkinsci.plugin.gitea.GiteaSCMSourceRequest;
 import org.jenkinsci.plugin.gitea.PullRequestSCMHead;
 import org.jenkinsci.plugin.gitea.TagSCMHead;
 import org.jenkinsci.plugin.gitea.client.api.GiteaBranch;
 import org.jenkinsci.plugin.gitea.client.api.GiteaPullRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 
 public class GiteaFilterRefUtils {
     public static boolean isBranchExcluded(
       GiteaSCMSourceRequest scmSourceRequest, BranchSCMHead scmHead, long acceptableDateTimeThreshold)
-            throws IOException {
-        Iterable<GiteaBranch> branches = scmSourceRequest.getBranches();
-        for (GiteaBranch branch : branches) {
-            long branchTS = branch.getCommit()
-                    .getTimestamp()
-                    .getTime();
-            if (branch.getName().equals(scmHead.getName())) {
-                return branchTS < acceptableDateTimeThreshold;
-            }
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref branch = RefTimestampIndex.of(scmSourceRequest)
+                .findBranch(scmHead.getName(), builder -> {
+                    Set<String> requested = scmSourceRequest.getRequestedOriginBranchNames();
+                    for (GiteaBranch b : scmSourceRequest.getBranches()) {
+                        if (TargetedHeads.isRequested(requested, b.getName())) {
+                            builder.addCommit(
+                                    b.getName(),
+                                    b.getCommit().getId(),
+                                    b.getCommit().getTimestamp().getTime(),
+                                    null);
+                        }
+                    }
+                });
+        if (branch == null) {
+            return false;
         }
-        return false;
+        return branch.getTimestamp() < acceptableDateTimeThreshold;
     }
 
     public static boolean isPullRequestExcluded(
-            GiteaSCMSourceRequest scmSourceRequest, PullRequestSCMHead scmHead, long acceptableDateTimeThreshold) {
-        String pullNr = scmHead.getName();
-        Iterable<GiteaPullRequest> pulls = scmSourceRequest.getPullRequests();
-        Optional<GiteaPullRequest> pull = StreamSupport.stream(pulls.spliterator(), false)
-                .filter(p -> pullNr.equals("PR-" + p.getNumber()))
-                .findAny();
-        if (pull.isPresent()) {
-            long latestPullTS = pull.get().getUpdatedAt().getTime();
+            GiteaSCMSourceRequest scmSourceRequest,
+            PullRequestSCMHead scmHead,
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource)
+            throws IOException, InterruptedException {
+        // the pull request listing provides the last update date, which is used whatever the configured age source
+        RefTimestampIndex.Ref pull = RefTimestampIndex.of(scmSourceRequest)
+                .findPullRequest(Long.parseLong(scmHead.getId()), builder -> {
+                    Set<Long> requested = scmSourceRequest.getRequestedPullRequestNumbers();
+                    for (GiteaPullRequest p : scmSourceRequest.getPullRequests()) {
+                        if (TargetedHeads.isRequested(requested, p.getNumber())) {
+                            builder.add(p.getNumber(), p.getHead().getSha(), p.getUpdatedAt().getTime(), null);
+                        }
+                    }
+                });
+        if (pull != null) {
+            long latestPullTS = pull.getTimestamp();
             if (latestPullTS > 0) return latestPullTS < acceptableDateTimeThreshold;
         }
         return false;
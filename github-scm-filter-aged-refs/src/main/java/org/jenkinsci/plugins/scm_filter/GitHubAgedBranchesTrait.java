@@ -33,7 +33,8 @@ public class GitHubAgedBranchesTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context, withBudget(new ExcludeOldBranchesSCMHeadFilter(retentionDays)), REF_TYPE);
         }
     }
 
@@ -76,11 +77,18 @@ public class GitHubAgedBranchesTrait extends AgedTypeRefsTrait {
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected void prefetch(@NonNull SCMSourceRequest scmSourceRequest) throws IOException, InterruptedException {
+            GitHubFilterRefUtils.prefetchBranches(
+                    (GitHubSCMSourceRequest) scmSourceRequest, getSource(), getAcceptableDateTimeThreshold());
+        }
+
+        @Override
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return GitHubFilterRefUtils.isBranchExcluded(
                         (GitHubSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (BranchSCMHead) scmHead,
                         getAcceptableDateTimeThreshold());
             }
@@ -10,11 +10,12 @@ import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.impl.trait.Selection;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.github_branch_source.*;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GitHubFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-public class GitHubAgedPullRequestsTrait extends AgedTypeRefsTrait {
+public class GitHubAgedPullRequestsTrait extends AgedPullRequestsTrait {
     private static final RefType REF_TYPE = RefType.PULL_REQUEST;
 
     /**
@@ -30,7 +31,11 @@ public class GitHubAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(withPullRequestSettings(
+                            new ExcludeOldPullRequestsSCMHeadFilter(retentionDays, pullRequestAgeSource))),
+                    REF_TYPE);
         }
     }
 
@@ -38,7 +43,7 @@ public class GitHubAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Selection
     @Symbol("gitHubAgedPullRequestsTrait")
     @SuppressWarnings("unused") // instantiated by Jenkins
-    public static class DescriptorImpl extends AgedRefsDescriptorImpl {
+    public static class DescriptorImpl extends AgedPullRequestsDescriptorImpl {
 
         @Override
         public Class<? extends SCMSourceContext> getContextClass() {
@@ -50,6 +55,11 @@ public class GitHubAgedPullRequestsTrait extends AgedTypeRefsTrait {
             return GitHubSCMSource.class;
         }
 
+        @Override
+        public boolean isPullRequestAgeSourceSupported() {
+            return true;
+        }
+
         @Override
         @NonNull
         public String getDisplayName() {
@@ -68,18 +78,31 @@ public class GitHubAgedPullRequestsTrait extends AgedTypeRefsTrait {
      */
     private static class ExcludeOldPullRequestsSCMHeadFilter extends ExcludeReferencesSCMHeadFilter {
 
-        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
+        }
+
+        @Override
+        protected void prefetch(@NonNull SCMSourceRequest scmSourceRequest) throws IOException, InterruptedException {
+            GitHubFilterRefUtils.prefetchPullRequests(
+                    (GitHubSCMSourceRequest) scmSourceRequest,
+                    getSource(),
+                    getAcceptableDateTimeThreshold(),
+                    getPullRequestAgeSource(),
+                    isExcludeNotUpdated());
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof PullRequestSCMHead) {
                 return GitHubFilterRefUtils.isPullRequestExcluded(
                         (GitHubSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource(),
+                        isExcludeNotUpdated());
             }
             return false;
         }
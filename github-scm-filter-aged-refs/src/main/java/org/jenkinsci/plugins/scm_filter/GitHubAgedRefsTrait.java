@@ -15,6 +15,8 @@ import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceContext;
 import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceRequest;
 import org.jenkinsci.plugins.github_branch_source.GitHubTagSCMHead;
 import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GitHubFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -36,7 +38,11 @@ public class GitHubAgedRefsTrait extends AgedRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(withPullRequestSettings(
+                            new ExcludeOldBranchesSCMHeadFilter(retentionDays, pullRequestAgeSource))),
+                    RefType.values());
         }
     }
 
@@ -58,6 +64,11 @@ public class GitHubAgedRefsTrait extends AgedRefsTrait {
         public Class<? extends SCMSource> getSourceClass() {
             return GitHubSCMSource.class;
         }
+
+        @Override
+        public boolean isPullRequestAgeSourceSupported() {
+            return true;
+        }
     }
 
     /**
@@ -65,23 +76,39 @@ public class GitHubAgedRefsTrait extends AgedRefsTrait {
      */
     private static class ExcludeOldBranchesSCMHeadFilter extends ExcludeBranchesSCMHeadFilter {
 
-        ExcludeOldBranchesSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldBranchesSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected void prefetch(@NonNull SCMSourceRequest scmSourceRequest) throws IOException, InterruptedException {
+            GitHubFilterRefUtils.prefetchBranches(
+                    (GitHubSCMSourceRequest) scmSourceRequest, getSource(), getAcceptableDateTimeThreshold());
+            GitHubFilterRefUtils.prefetchPullRequests(
+                    (GitHubSCMSourceRequest) scmSourceRequest,
+                    getSource(),
+                    getAcceptableDateTimeThreshold(),
+                    getPullRequestAgeSource(),
+                    isExcludeNotUpdated());
+        }
+
+        @Override
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return GitHubFilterRefUtils.isBranchExcluded(
                         (GitHubSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (BranchSCMHead) scmHead,
                         getAcceptableDateTimeThreshold());
             } else if (scmHead instanceof PullRequestSCMHead) {
                 return GitHubFilterRefUtils.isPullRequestExcluded(
                         (GitHubSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (PullRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource(),
+                        isExcludeNotUpdated());
             } else if (scmHead instanceof GitHubTagSCMHead) {
                 return GitHubFilterRefUtils.isTagExcluded((GitHubTagSCMHead) scmHead, getAcceptableDateTimeThreshold());
             }
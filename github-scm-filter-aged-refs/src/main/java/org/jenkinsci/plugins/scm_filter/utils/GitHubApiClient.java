@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ProxyConfiguration;
+import hudson.Util;
+import hudson.model.Item;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.github_branch_source.Connector;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.github_branch_source.GitHubServerConfig;
+
+/**
+ * Minimal GitHub API client for the endpoints github-api does not cover, authenticated with the scan credentials of
+ * a source.
+ * <p>
+ * The scan credentials must be username/password credentials whose password is a token, which includes GitHub App
+ * credentials: their password is an installation token, renewed before it expires, so it is read for every request.
+ */
+final class GitHubApiClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Map<SCMSourceRequest, Optional<GitHubApiClient>> CLIENTS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final URI apiUri;
+
+    private final Supplier<String> token;
+
+    private final HttpClient httpClient;
+
+    private final RateLimitScheduler scheduler;
+
+    GitHubApiClient(@NonNull URI apiUri, @NonNull String token, @NonNull HttpClient httpClient) {
+        this(apiUri, () -> token, httpClient, RateLimitScheduler.of(apiUri.toString()));
+    }
+
+    GitHubApiClient(
+            @NonNull URI apiUri,
+            @NonNull Supplier<String> token,
+            @NonNull HttpClient httpClient,
+            @NonNull RateLimitScheduler scheduler) {
+        this.apiUri = apiUri;
+        this.token = token;
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Gets the client of a request, looking up the scan credentials only once per request.
+     *
+     * @param request the request
+     * @param source the source of the request
+     * @return the client or {@code null} if the source scans anonymously or with credentials not providing a token
+     */
+    @CheckForNull
+    static GitHubApiClient of(@NonNull SCMSourceRequest request, @NonNull GitHubSCMSource source) {
+        return CLIENTS.computeIfAbsent(request, r -> Optional.ofNullable(forSource(source)))
+                .orElse(null);
+    }
+
+    /**
+     * Creates a client for the scan credentials of a source.
+     *
+     * @param source the source
+     * @return the client or {@code null} if the source scans anonymously or with credentials not providing a token
+     */
+    @CheckForNull
+    static GitHubApiClient forSource(@NonNull GitHubSCMSource source) {
+        String apiUri = Util.fixEmpty(source.getApiUri());
+        if (apiUri == null) {
+            apiUri = GitHubServerConfig.GITHUB_URL;
+        }
+        SCMSourceOwner owner = source.getOwner();
+        StandardCredentials credentials = Connector.lookupScanCredentials(
+                owner instanceof Item ? (Item) owner : null, apiUri, source.getCredentialsId(), source.getRepoOwner());
+        if (!(credentials instanceof StandardUsernamePasswordCredentials)) {
+            return null;
+        }
+        StandardUsernamePasswordCredentials tokenCredentials = (StandardUsernamePasswordCredentials) credentials;
+        // GitHub App installation tokens are renewed, the credentials identify the quota
+        return new GitHubApiClient(
+                URI.create(apiUri),
+                () -> tokenCredentials.getPassword().getPlainText(),
+                ProxyConfiguration.newHttpClient(),
+                RateLimitScheduler.of(apiUri + "::" + credentials.getId()));
+    }
+
+    /**
+     * @return the GraphQL endpoint matching the REST API endpoint, including GitHub Enterprise servers
+     */
+    @NonNull
+    URI getGraphQLUri() {
+        String api = getApiBase();
+        if (api.endsWith("/api/v3")) {
+            return URI.create(api.substring(0, api.length() - "v3".length()) + "graphql");
+        }
+        return URI.create(api + "/graphql");
+    }
+
+    /**
+     * Fetches the committer date of a commit from the git database endpoint, which unlike the commits endpoint does
+     * not carry the file list and patches of the commit.
+     *
+     * @param owner the repository owner
+     * @param repository the repository name
+     * @param sha the commit SHA
+     * @return the committer date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if the commit has none
+     * @throws IOException if the request failed, after retrying transient failures
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    long getCommitDate(@NonNull String owner, @NonNull String repository, @NonNull String sha)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                        getRestUri("/repos/" + owner + "/" + repository + "/git/commits/" + sha))
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + token.get())
+                .header("Accept", "application/vnd.github+json")
+                .GET()
+                .build();
+        return LookupRetry.call(getApiBase() + "/repos/{owner}/{repo}/git/commits/{sha}", () -> {
+            HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new HttpStatusException(
+                            response.statusCode(),
+                            "GET " + request.uri() + " failed with HTTP " + response.statusCode());
+                }
+                return CommitDateJsonReader.readDate(body, "committer", "date");
+            }
+        });
+    }
+
+    /**
+     * Sends a request once the {@link RateLimitScheduler} of the credentials allows it, this client being the lane of
+     * its source.
+     */
+    @NonNull
+    private <T> HttpResponse<T> send(@NonNull HttpRequest request, @NonNull HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        try (RateLimitScheduler.Permit permit = scheduler.acquire(this)) {
+            HttpResponse<T> response = httpClient.send(request, handler);
+            permit.complete(response.statusCode(), response.headers());
+            return response;
+        }
+    }
+
+    @NonNull
+    private URI getRestUri(@NonNull String path) {
+        return URI.create(getApiBase() + path);
+    }
+
+    @NonNull
+    private String getApiBase() {
+        String api = apiUri.toString();
+        return api.endsWith("/") ? api.substring(0, api.length() - 1) : api;
+    }
+
+    /**
+     * Runs a GraphQL query.
+     *
+     * @param query the query
+     * @param variables the query variables
+     * @return the {@code data} of the response
+     * @throws IOException if the query failed or returned errors
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @NonNull
+    JSONObject graphQL(@NonNull String query, @NonNull JSONObject variables) throws IOException, InterruptedException {
+        JSONObject body = new JSONObject();
+        body.put("query", query);
+        body.put("variables", variables);
+        HttpRequest request = HttpRequest.newBuilder(getGraphQLUri())
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + token.get())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return LookupRetry.call(request.uri().toString(), () -> {
+            HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new HttpStatusException(
+                        response.statusCode(),
+                        "GraphQL query to " + request.uri() + " failed with HTTP " + response.statusCode());
+            }
+            JSONObject result = JSONObject.fromObject(response.body());
+            if (result.has("errors")) {
+                // the server answered, the query itself is at fault
+                throw new HttpStatusException(
+                        response.statusCode(),
+                        "GraphQL query to " + request.uri() + " failed: " + result.get("errors"));
+            }
+            return result.getJSONObject("data");
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMSource;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceRequest;
+import org.kohsuke.github.GHBranch;
+import org.kohsuke.github.GHPullRequest;
+
+/**
+ * Resolves the head commit dates of all branches and open pull requests of a repository through the GraphQL API,
+ * {@value #PAGE_SIZE} refs per query.
+ */
+final class GitHubBulkResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(GitHubBulkResolver.class.getName());
+
+    static final int PAGE_SIZE = 100;
+
+    private static final String BRANCHES_QUERY = "query($owner: String!, $name: String!, $cursor: String) {"
+            + " repository(owner: $owner, name: $name) {"
+            + " refs(refPrefix: \"refs/heads/\", first: " + PAGE_SIZE + ", after: $cursor) {"
+            + " pageInfo { hasNextPage endCursor }"
+            + " nodes { target { oid ... on Commit { committedDate } } } } } }";
+
+    private static final String PULL_REQUESTS_QUERY = "query($owner: String!, $name: String!, $cursor: String) {"
+            + " repository(owner: $owner, name: $name) {"
+            + " pullRequests(states: OPEN, first: " + PAGE_SIZE + ", after: $cursor) {"
+            + " pageInfo { hasNextPage endCursor }"
+            + " nodes { commits(last: 1) { nodes { commit { oid committedDate } } } } } } }";
+
+    private final GitHubApiClient client;
+
+    GitHubBulkResolver(@NonNull GitHubApiClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Prefetches the head commit dates of a request into its index, the first time a filter of the request asks.
+     * Failures are logged and leave the index untouched, so that the heads get resolved through the REST API.
+     * Requests {@linkplain TargetedHeads targeting} a few heads skip the prefetch, resolving these heads one by one
+     * costs fewer calls than listing all heads of the repository. Heads held by the local cache repository of the
+     * source are read from it first, and the query only runs if more than a few heads are still missing.
+     *
+     * @param request the request
+     * @param scmSource the source of the request, if known
+     * @throws IOException if another prefetch of the request failed
+     * @throws InterruptedException if interrupted while prefetching
+     */
+    static void prefetch(@NonNull GitHubSCMSourceRequest request, @CheckForNull SCMSource scmSource)
+            throws IOException, InterruptedException {
+        if (!(scmSource instanceof GitHubSCMSource)) {
+            return;
+        }
+        if (TargetedHeads.isTargeted(
+                request.isFetchBranches() ? request.getRequestedOriginBranchNames() : Set.of(),
+                request.isFetchPRs() ? request.getRequestedPullRequestNumbers() : Set.of())) {
+            return;
+        }
+        GitHubSCMSource source = (GitHubSCMSource) scmSource;
+        RefTimestampIndex.of(request).prefetchOnce(index -> {
+            File cacheRepository = LocalCommitDates.getCacheRepository(source);
+            if (cacheRepository != null
+                    && TargetedHeads.isTargeted(resolveLocally(index, cacheRepository, listHeads(request)))) {
+                return;
+            }
+            GitHubApiClient client = GitHubApiClient.of(request, source);
+            if (client == null) {
+                return;
+            }
+            try {
+                new GitHubBulkResolver(client)
+                        .fetchHeadCommitDates(source.getRepoOwner(), source.getRepository())
+                        .forEach(index::putCommitDate);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(
+                        Level.FINE,
+                        "Could not prefetch head commit dates of " + source.getRepoOwner() + "/"
+                                + source.getRepository() + " through GraphQL, falling back to REST",
+                        e);
+            }
+        });
+    }
+
+    /**
+     * Lists the head SHAs of the branches and pull requests the request targets.
+     *
+     * @param request the request
+     * @return the head SHAs
+     * @throws IOException if the listing failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    @NonNull
+    private static Set<String> listHeads(@NonNull GitHubSCMSourceRequest request)
+            throws IOException, InterruptedException {
+        Set<String> heads = new HashSet<>();
+        if (request.isFetchBranches()) {
+            Set<String> requested = request.getRequestedOriginBranchNames();
+            for (GHBranch branch : request.getBranches()) {
+                if (TargetedHeads.isRequested(requested, branch.getName())) {
+                    heads.add(branch.getSHA1());
+                }
+            }
+        }
+        if (request.isFetchPRs()) {
+            Set<Integer> requested = request.getRequestedPullRequestNumbers();
+            for (GHPullRequest pull : request.getPullRequests()) {
+                if (TargetedHeads.isRequested(requested, pull.getNumber())) {
+                    heads.add(pull.getHead().getSha());
+                }
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * Reads the commit dates of heads from a local repository into an index.
+     *
+     * @param index the index
+     * @param repository the git directory of the local repository
+     * @param heads the head SHAs
+     * @return the heads the repository does not hold
+     */
+    @NonNull
+    private static Set<String> resolveLocally(
+            @NonNull RefTimestampIndex index, @NonNull File repository, @NonNull Set<String> heads) {
+        Map<String, Long> dates = LocalCommitDates.getCommitDates(repository, heads);
+        dates.forEach(index::putCommitDate);
+        Set<String> missing = new HashSet<>(heads);
+        missing.removeAll(dates.keySet());
+        return missing;
+    }
+
+    /**
+     * Fetches the head commit dates of all branches and open pull requests of a repository.
+     *
+     * @param owner the repository owner
+     * @param repository the repository name
+     * @return the commit dates in epoch milliseconds by SHA
+     * @throws IOException if a query failed
+     * @throws InterruptedException if interrupted while querying
+     */
+    @NonNull
+    Map<String, Long> fetchHeadCommitDates(@NonNull String owner, @NonNull String repository)
+            throws IOException, InterruptedException {
+        Map<String, Long> dates = new HashMap<>();
+        String cursor = null;
+        do {
+            JSONObject refs = query(BRANCHES_QUERY, owner, repository, cursor).getJSONObject("refs");
+            for (Object node : refs.getJSONArray("nodes")) {
+                addCommit(dates, ((JSONObject) node).optJSONObject("target"));
+            }
+            cursor = nextCursor(refs);
+        } while (cursor != null);
+        do {
+            JSONObject pulls = query(PULL_REQUESTS_QUERY, owner, repository, cursor).getJSONObject("pullRequests");
+            for (Object node : pulls.getJSONArray("nodes")) {
+                JSONArray commits = ((JSONObject) node).getJSONObject("commits").getJSONArray("nodes");
+                if (!commits.isEmpty()) {
+                    addCommit(dates, commits.getJSONObject(0).getJSONObject("commit"));
+                }
+            }
+            cursor = nextCursor(pulls);
+        } while (cursor != null);
+        return dates;
+    }
+
+    private JSONObject query(String query, String owner, String repository, @CheckForNull String cursor)
+            throws IOException, InterruptedException {
+        JSONObject variables = new JSONObject();
+        variables.put("owner", owner);
+        variables.put("name", repository);
+        if (cursor != null) {
+            variables.put("cursor", cursor);
+        }
+        return client.graphQL(query, variables).getJSONObject("repository");
+    }
+
+    private static void addCommit(Map<String, Long> dates, @CheckForNull JSONObject commit) {
+        // refs may also point to trees or blobs, which have no committedDate
+        if (commit != null && commit.has("oid") && commit.has("committedDate")) {
+            dates.put(commit.getString("oid"), Instant.parse(commit.getString("committedDate")).toEpochMilli());
+        }
+    }
+
+    @CheckForNull
+    private static String nextCursor(JSONObject connection) {
+        JSONObject pageInfo = connection.getJSONObject("pageInfo");
+        return pageInfo.optBoolean("hasNextPage") ? pageInfo.getString("endCursor") : null;
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import java.util.Date;
+import org.kohsuke.github.GHEventPayload;
+
+/**
+ * Records the dates of the pushed commits of GitHub push events, the committer dates of the commits, scoped to the full
+ * name of the repository pushed to. Pull request events carry no commit date, but their head commit was usually pushed
+ * to a branch of the repository first.
+ */
+@Extension(ordinal = CommitDateEventListener.ORDINAL)
+public class GitHubCommitDateEventListener extends CommitDateEventListener {
+
+    @Override
+    protected void recordCommitDates(@NonNull Object payload, @NonNull CommitDateHints hints) {
+        if (!(payload instanceof GHEventPayload.Push)) {
+            return;
+        }
+        GHEventPayload.Push push = (GHEventPayload.Push) payload;
+        if (push.getRepository() == null || push.getRepository().getFullName() == null) {
+            return;
+        }
+        for (GHEventPayload.Push.PushCommit commit : push.getCommits()) {
+            Date timestamp = commit.getTimestamp();
+            if (timestamp != null && commit.getSha() != null) {
+                hints.put(push.getRepository().getFullName(), commit.getSha(), timestamp.getTime());
+            }
+        }
+    }
+}
@@ -1,54 +1,321 @@
 package org.jenkinsci.plugins.scm_filter.utils;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.io.IOException;
-import java.util.Optional;
-import java.util.stream.StreamSupport;
+import java.util.Date;
+import java.util.Set;
+import jenkins.scm.api.SCMSource;
 import org.jenkinsci.plugins.github_branch_source.BranchSCMHead;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
 import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceRequest;
 import org.jenkinsci.plugins.github_branch_source.GitHubTagSCMHead;
 import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 import org.kohsuke.github.GHBranch;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHPullRequestCommitDetail;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.HttpException;
 import org.kohsuke.github.PagedIterator;
 
 public class GitHubFilterRefUtils {
+    /**
+     * Largest page size accepted by the pull request commits endpoint.
+     */
+    private static final int COMMITS_PAGE_SIZE = 100;
+
     public static boolean isBranchExcluded(
-            GitHubSCMSourceRequest scmSourceRequest, BranchSCMHead scmHead, long acceptableDateTimeThreshold)
-            throws IOException {
-        Iterable<GHBranch> branches = scmSourceRequest.getBranches();
-        for (GHBranch branch : branches) {
-            long branchTS = branch.getOwner()
-                    .getCommit(branch.getSHA1())
-                    .getCommitDate()
-                    .getTime();
-            if (branch.getName().equals(scmHead.getName())) {
-                return branchTS < acceptableDateTimeThreshold;
-            }
+            GitHubSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            BranchSCMHead scmHead,
+            long acceptableDateTimeThreshold)
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref branch =
+                RefTimestampIndex.of(scmSourceRequest).findBranch(scmHead.getName(), branches(scmSourceRequest));
+        GHBranch ghBranch = branch == null ? null : branch.getSource(GHBranch.class);
+        if (ghBranch == null) {
+            return false;
+        }
+        HeadDecisions decisions = HeadDecisions.of(source);
+        Boolean decided = decisions.isExcluded(
+                scmHead.getName(), branch.getHash(), PullRequestAgeSource.HEAD_COMMIT, acceptableDateTimeThreshold);
+        if (decided != null) {
+            return decided;
         }
-        return false;
+        if (isHintedRecent(ghBranch.getOwner(), branch, acceptableDateTimeThreshold)) {
+            return false;
+        }
+        long branchTS;
+        try {
+            branchTS = getHeadTimestamp(scmSourceRequest, source, branch, ghBranch.getOwner());
+        } catch (IOException e) {
+            return UnresolvedHeads.decide(
+                    scmSourceRequest,
+                    decisions,
+                    scmHead,
+                    branch.getHash(),
+                    PullRequestAgeSource.HEAD_COMMIT,
+                    acceptableDateTimeThreshold,
+                    e);
+        }
+        decisions.record(scmHead.getName(), branch.getHash(), PullRequestAgeSource.HEAD_COMMIT, branchTS, true);
+        return branchTS != RefTimestampIndex.UNKNOWN && branchTS < acceptableDateTimeThreshold;
     }
 
     public static boolean isPullRequestExcluded(
-            GitHubSCMSourceRequest scmSourceRequest, PullRequestSCMHead scmHead, long acceptableDateTimeThreshold) {
-        int pullNr = scmHead.getNumber();
-        Iterable<GHPullRequest> pulls = scmSourceRequest.getPullRequests();
-        Optional<GHPullRequest> pull = StreamSupport.stream(pulls.spliterator(), false)
-                .filter(p -> pullNr == p.getNumber())
-                .findAny();
-        if (pull.isPresent()) {
-            PagedIterator<GHPullRequestCommitDetail> iterator =
-                    pull.get().listCommits().iterator();
-            long latestPullTS = 0;
-            while (iterator.hasNext()) {
-                long commitTS =
-                        iterator.next().getCommit().getCommitter().getDate().getTime();
-                if (commitTS > latestPullTS) latestPullTS = commitTS;
+            GitHubSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            PullRequestSCMHead scmHead,
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource,
+            boolean excludeNotUpdated)
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref ref = RefTimestampIndex.of(scmSourceRequest)
+                .findPullRequest(scmHead.getNumber(), pullRequests(scmSourceRequest));
+        GHPullRequest pull = ref == null ? null : ref.getSource(GHPullRequest.class);
+        if (pull == null) {
+            return false;
+        }
+        PullRequestAgeSource ageSource = getAgeSource(pullRequestAgeSource);
+        if (ageSource == PullRequestAgeSource.UPDATED_AT) {
+            // updates do not move the head, they cannot be decided from a previous scan
+            return pull.getUpdatedAt().getTime() < acceptableDateTimeThreshold;
+        }
+        if (excludeNotUpdated && isNotUpdatedSince(pull, acceptableDateTimeThreshold)) {
+            return true;
+        }
+        HeadDecisions decisions = HeadDecisions.of(source);
+        String key = HeadDecisions.keyOf(scmHead);
+        Boolean decided = decisions.isExcluded(key, ref.getHash(), ageSource, acceptableDateTimeThreshold);
+        if (decided != null) {
+            return decided;
+        }
+        if (isHintedRecent(headRepository(pull), ref, acceptableDateTimeThreshold)) {
+            return false;
+        }
+        if (ageSource == PullRequestAgeSource.HEAD_COMMIT) {
+            long headTS;
+            try {
+                headTS = getHeadTimestamp(scmSourceRequest, source, ref, pull.getRepository());
+            } catch (IOException e) {
+                return UnresolvedHeads.decide(
+                        scmSourceRequest, decisions, scmHead, ref.getHash(), ageSource, acceptableDateTimeThreshold, e);
+            }
+            decisions.record(key, ref.getHash(), ageSource, headTS, true);
+            return headTS != RefTimestampIndex.UNKNOWN && headTS < acceptableDateTimeThreshold;
+        }
+        return isPullRequestHistoryExcluded(
+                scmSourceRequest, source, scmHead, ref, pull, acceptableDateTimeThreshold, decisions);
+    }
+
+    /**
+     * Starts resolving the head commit dates of the branches not decided by a previous scan, after the GraphQL
+     * prefetch covered what it could.
+     */
+    public static void prefetchBranches(
+            GitHubSCMSourceRequest scmSourceRequest, @CheckForNull SCMSource source, long acceptableDateTimeThreshold)
+            throws IOException, InterruptedException {
+        GitHubBulkResolver.prefetch(scmSourceRequest, source);
+        HeadDecisions decisions = HeadDecisions.of(source);
+        RefTimestampIndex.of(scmSourceRequest).prefetchBranches(source, branches(scmSourceRequest), (name, ref) -> {
+            GHBranch ghBranch = ref.getSource(GHBranch.class);
+            if (ghBranch == null) {
+                return null;
             }
-            // Did we see at least one commit?
-            if (latestPullTS > 0) return latestPullTS < acceptableDateTimeThreshold;
+            Boolean decided = decisions.isExcluded(
+                    name, ref.getHash(), PullRequestAgeSource.HEAD_COMMIT, acceptableDateTimeThreshold);
+            return decided != null || isHintedRecent(ghBranch.getOwner(), ref, acceptableDateTimeThreshold)
+                    ? null
+                    : commitDateLoader(scmSourceRequest, source, ghBranch.getOwner());
+        });
+    }
+
+    /**
+     * Starts resolving the head commit dates of the pull requests not decided by a previous scan, after the GraphQL
+     * prefetch covered what it could. Both the head commit and the commit history age sources start from the head
+     * commit date. Pull requests not updated since the threshold are skipped when they are excluded for it.
+     */
+    public static void prefetchPullRequests(
+            GitHubSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource,
+            boolean excludeNotUpdated)
+            throws IOException, InterruptedException {
+        PullRequestAgeSource ageSource = getAgeSource(pullRequestAgeSource);
+        if (ageSource == PullRequestAgeSource.UPDATED_AT) {
+            return;
         }
-        return false;
+        GitHubBulkResolver.prefetch(scmSourceRequest, source);
+        HeadDecisions decisions = HeadDecisions.of(source);
+        RefTimestampIndex.of(scmSourceRequest)
+                .prefetchPullRequests(source, pullRequests(scmSourceRequest), (number, ref) -> {
+                    GHPullRequest pull = ref.getSource(GHPullRequest.class);
+                    if (pull == null || excludeNotUpdated && isNotUpdatedSince(pull, acceptableDateTimeThreshold)) {
+                        return null;
+                    }
+                    Boolean decided = decisions.isChangeRequestExcluded(
+                            String.valueOf(number), ref.getHash(), ageSource, acceptableDateTimeThreshold);
+                    return decided != null || isHintedRecent(headRepository(pull), ref, acceptableDateTimeThreshold)
+                            ? null
+                            : commitDateLoader(scmSourceRequest, source, pull.getRepository());
+                });
+    }
+
+    /**
+     * Indexes the listed branches the request targets, all of them unless it processes an event or a single branch.
+     */
+    private static RefTimestampIndex.Populator<String> branches(GitHubSCMSourceRequest scmSourceRequest) {
+        return builder -> {
+            Set<String> requested = scmSourceRequest.getRequestedOriginBranchNames();
+            for (GHBranch b : scmSourceRequest.getBranches()) {
+                if (TargetedHeads.isRequested(requested, b.getName())) {
+                    builder.add(b.getName(), b.getSHA1(), RefTimestampIndex.UNKNOWN, b);
+                }
+            }
+        };
+    }
+
+    private static RefTimestampIndex.Populator<Long> pullRequests(GitHubSCMSourceRequest scmSourceRequest) {
+        return builder -> {
+            Set<Integer> requested = scmSourceRequest.getRequestedPullRequestNumbers();
+            for (GHPullRequest p : scmSourceRequest.getPullRequests()) {
+                if (TargetedHeads.isRequested(requested, p.getNumber())) {
+                    builder.add((long) p.getNumber(), p.getHead().getSha(), RefTimestampIndex.UNKNOWN, p);
+                }
+            }
+        };
+    }
+
+    /**
+     * Tells whether the listing gives a pull request a last update older than the threshold. Pushing to a pull request
+     * updates it, so its commits are at least as old.
+     */
+    private static boolean isNotUpdatedSince(GHPullRequest pull, long acceptableDateTimeThreshold) {
+        try {
+            Date updatedAt = pull.getUpdatedAt();
+            return updatedAt != null && updatedAt.getTime() < acceptableDateTimeThreshold;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether a push event recently reported the head commit of a ref, pushed to a repository, as not older than
+     * the threshold. Event dates are not verified, so such a head is kept without recording a decision for it.
+     */
+    private static boolean isHintedRecent(
+            @CheckForNull GHRepository repository, RefTimestampIndex.Ref ref, long acceptableDateTimeThreshold) {
+        return repository != null
+                && CommitDateHints.get()
+                        .isRecent(repository.getFullName(), ref.getHash(), acceptableDateTimeThreshold);
+    }
+
+    /**
+     * @return the repository the head of a pull request is pushed to, if still known
+     */
+    @CheckForNull
+    private static GHRepository headRepository(GHPullRequest pull) {
+        return pull.getHead() == null ? null : pull.getHead().getRepository();
+    }
+
+    private static PullRequestAgeSource getAgeSource(@CheckForNull PullRequestAgeSource pullRequestAgeSource) {
+        return pullRequestAgeSource == null ? PullRequestAgeSource.COMMIT_HISTORY : pullRequestAgeSource;
+    }
+
+    /**
+     * Streams the commits of a pull request until one is found that is newer than the threshold.
+     * <p>
+     * The head commit is usually the newest one, so it is checked first through the request scoped index and
+     * fresh pull requests are decided with a single lookup. Only stale heads walk the commit pages, keeping nothing but
+     * the commit dates while doing so. A pull request included before the end of the walk only records a lower bound
+     * of its newest commit.
+     */
+    private static boolean isPullRequestHistoryExcluded(
+            GitHubSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            PullRequestSCMHead scmHead,
+            RefTimestampIndex.Ref ref,
+            GHPullRequest pull,
+            long acceptableDateTimeThreshold,
+            HeadDecisions decisions)
+            throws IOException, InterruptedException {
+        String key = HeadDecisions.keyOf(scmHead);
+        long headTS;
+        try {
+            headTS = getHeadTimestamp(scmSourceRequest, source, ref, pull.getRepository());
+        } catch (IOException e) {
+            // walking the commits would only add calls to a failing server
+            return UnresolvedHeads.decide(
+                    scmSourceRequest,
+                    decisions,
+                    scmHead,
+                    ref.getHash(),
+                    PullRequestAgeSource.COMMIT_HISTORY,
+                    acceptableDateTimeThreshold,
+                    e);
+        }
+        if (headTS >= acceptableDateTimeThreshold) {
+            decisions.record(key, ref.getHash(), PullRequestAgeSource.COMMIT_HISTORY, headTS, false);
+            return false;
+        }
+        long newestTS = headTS;
+        PagedIterator<GHPullRequestCommitDetail> pages = pull.listCommits().withPageSize(COMMITS_PAGE_SIZE).iterator();
+        boolean seenCommit = false;
+        while (pages.hasNext()) {
+            for (GHPullRequestCommitDetail commit : pages.nextPage()) {
+                long commitTS = commit.getCommit().getCommitter().getDate().getTime();
+                if (commitTS >= acceptableDateTimeThreshold) {
+                    decisions.record(key, ref.getHash(), PullRequestAgeSource.COMMIT_HISTORY, commitTS, false);
+                    return false;
+                }
+                newestTS = Math.max(newestTS, commitTS);
+                seenCommit = true;
+            }
+        }
+        decisions.record(key, ref.getHash(), PullRequestAgeSource.COMMIT_HISTORY, newestTS, true);
+        // Did we see at least one commit?
+        return seenCommit || headTS != RefTimestampIndex.UNKNOWN;
+    }
+
+    /**
+     * Resolves the commit date of a head once per SHA and request. The first resolution of a request prefetches the
+     * dates of all heads through GraphQL when the source credentials allow it, later ones only fall back to a REST
+     * call for the heads the prefetch did not cover. That call reads the git commit rather than the full commit
+     * resource, which also lists the changed files and their patches. Cheaper {@link RefAgeResolver}s, such as the
+     * cache repository of the source, are consulted first.
+     */
+    private static long getHeadTimestamp(
+            GitHubSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            RefTimestampIndex.Ref ref,
+            GHRepository repository)
+            throws IOException, InterruptedException {
+        if (ref.getTimestamp() == RefTimestampIndex.UNKNOWN) {
+            GitHubBulkResolver.prefetch(scmSourceRequest, source);
+        }
+        return RefTimestampIndex.of(scmSourceRequest)
+                .resolve(ref, source, commitDateLoader(scmSourceRequest, source, repository));
+    }
+
+    private static RefTimestampIndex.CommitDateLoader commitDateLoader(
+            GitHubSCMSourceRequest scmSourceRequest, @CheckForNull SCMSource source, GHRepository repository) {
+        GitHubApiClient client = source instanceof GitHubSCMSource
+                ? GitHubApiClient.of(scmSourceRequest, (GitHubSCMSource) source)
+                : null;
+        return sha -> {
+            if (client != null) {
+                return client.getCommitDate(repository.getOwnerName(), repository.getName(), sha);
+            }
+            // anonymous scans go through github-api, which shares the rate limit handling of the scan
+            return LookupRetry.call(repository.getRoot().getApiUrl() + "/repos/{owner}/{repo}/commits/{sha}", () -> {
+                try {
+                    return repository.getCommit(sha).getCommitDate().getTime();
+                } catch (HttpException e) {
+                    throw new HttpStatusException(Math.max(0, e.getResponseCode()), e.getMessage(), e);
+                }
+            });
+        };
     }
 
     public static boolean isTagExcluded(GitHubTagSCMHead scmHead, long acceptableDateTimeThreshold) {
@@ -22,6 +22,27 @@ class GitHubAgedPullRequestsTraitTest {
         assertThat(instance.getTraits())
                 .singleElement()
                 .isInstanceOf(GitHubAgedPullRequestsTrait.class)
-                .hasFieldOrPropertyWithValue("retentionDays", 30);
+                .hasFieldOrPropertyWithValue("retentionDays", 30)
+                .hasFieldOrPropertyWithValue("pullRequestAgeSource", "");
+    }
+
+    @Test
+    void restoreAgeSource() throws IOException {
+        GitHubSCMSource instance = load("exclude_pull_requests_updated_at.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitHubAgedPullRequestsTrait.class)
+                .hasFieldOrPropertyWithValue("retentionDays", 30)
+                .hasFieldOrPropertyWithValue("pullRequestAgeSource", "UPDATED_AT");
+    }
+
+    @Test
+    void restoreExcludeNotUpdated() throws IOException {
+        GitHubSCMSource instance = load("exclude_pull_requests_not_updated.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitHubAgedPullRequestsTrait.class)
+                .hasFieldOrPropertyWithValue("pullRequestAgeSource", "")
+                .hasFieldOrPropertyWithValue("excludeNotUpdated", true);
     }
 }
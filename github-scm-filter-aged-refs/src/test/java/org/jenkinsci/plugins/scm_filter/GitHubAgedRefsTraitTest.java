@@ -22,6 +22,21 @@ class GitHubAgedRefsTraitTest {
         assertThat(instance.getTraits())
                 .singleElement()
                 .isInstanceOf(GitHubAgedRefsTrait.class)
-                .hasFieldOrPropertyWithValue("retentionDays", 30);
+                .hasFieldOrPropertyWithValue("retentionDays", 30)
+                .hasFieldOrPropertyWithValue("headTimeoutSeconds", 0)
+                .hasFieldOrPropertyWithValue("scanTimeoutSeconds", 0)
+                .hasFieldOrPropertyWithValue("excludeOnTimeout", false);
+    }
+
+    @Test
+    void restoreBudget() throws IOException {
+        GitHubSCMSource instance = load("exclude_thirty_days_with_budget.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitHubAgedRefsTrait.class)
+                .hasFieldOrPropertyWithValue("retentionDays", 30)
+                .hasFieldOrPropertyWithValue("headTimeoutSeconds", 10)
+                .hasFieldOrPropertyWithValue("scanTimeoutSeconds", 300)
+                .hasFieldOrPropertyWithValue("excludeOnTimeout", true);
     }
 }
@@ -0,0 +1,109 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GitHubBulkResolverTest {
+
+    private HttpServer server;
+
+    private final List<JSONObject> queries = new ArrayList<>();
+
+    private final List<String> authorizations = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/graphql", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JSONObject query;
+        try (InputStream body = exchange.getRequestBody()) {
+            query = JSONObject.fromObject(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        queries.add(query);
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        JSONObject variables = query.getJSONObject("variables");
+        String response;
+        if ("missing".equals(variables.getString("name"))) {
+            response = "errors.json";
+        } else if (query.getString("query").contains("pullRequests(")) {
+            response = "pull_requests.json";
+        } else if (variables.has("cursor")) {
+            response = "branches_page2.json";
+        } else {
+            response = "branches_page1.json";
+        }
+        byte[] bytes;
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/" + response)) {
+            bytes = res.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private GitHubBulkResolver resolver() {
+        URI api = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/v3");
+        return new GitHubBulkResolver(new GitHubApiClient(api, "secret", HttpClient.newHttpClient()));
+    }
+
+    @Test
+    void fetchesAllPages() throws Exception {
+        Map<String, Long> dates = resolver().fetchHeadCommitDates("cloudbeers", "stunning-adventure");
+
+        assertThat(dates)
+                .containsOnly(
+                        Map.entry(
+                                "1111111111111111111111111111111111111111",
+                                Instant.parse("2024-01-01T10:00:00Z").toEpochMilli()),
+                        Map.entry(
+                                "2222222222222222222222222222222222222222",
+                                Instant.parse("2023-06-15T08:30:00Z").toEpochMilli()),
+                        Map.entry(
+                                "3333333333333333333333333333333333333333",
+                                Instant.parse("2022-12-31T23:59:59Z").toEpochMilli()),
+                        Map.entry(
+                                "5555555555555555555555555555555555555555",
+                                Instant.parse("2024-02-29T12:00:00Z").toEpochMilli()));
+        assertThat(queries).hasSize(3);
+        assertThat(queries.get(1).getJSONObject("variables").getString("cursor"))
+                .isEqualTo("Y3Vyc29yOjE=");
+        assertThat(authorizations).containsOnly("Bearer secret");
+    }
+
+    @Test
+    void failsOnErrors() {
+        assertThatThrownBy(() -> resolver().fetchHeadCommitDates("cloudbeers", "missing"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("NOT_FOUND");
+    }
+}
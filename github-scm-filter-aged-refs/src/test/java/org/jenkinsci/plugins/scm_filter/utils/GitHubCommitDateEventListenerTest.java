@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.kohsuke.github.GHEventPayload;
+import org.kohsuke.github.GitHub;
+
+class GitHubCommitDateEventListenerTest {
+
+    private final CommitDateHints hints = new CommitDateHints();
+
+    @Test
+    void recordsPushedCommitDates() throws IOException {
+        GHEventPayload.Push push;
+        try (Reader reader = new InputStreamReader(
+                GitHubCommitDateEventListenerTest.class.getResourceAsStream(
+                        "GitHubCommitDateEventListenerTest/push.json"),
+                StandardCharsets.UTF_8)) {
+            push = GitHub.offline().parseEventPayload(reader, GHEventPayload.Push.class);
+        }
+
+        new GitHubCommitDateEventListener().recordCommitDates(push, hints);
+
+        long first = Instant.parse("2026-10-01T10:00:00Z").toEpochMilli();
+        long second = Instant.parse("2026-10-02T10:00:00Z").toEpochMilli();
+        assertThat(hints.isRecent("owner/repo", "2222222222222222222222222222222222222222", first))
+                .isTrue();
+        assertThat(hints.isRecent("owner/repo", "2222222222222222222222222222222222222222", first + 1))
+                .isFalse();
+        assertThat(hints.isRecent("owner/repo", "3333333333333333333333333333333333333333", second))
+                .isTrue();
+        // the dates are only hints for the repository pushed to
+        assertThat(hints.isRecent("other/repo", "3333333333333333333333333333333333333333", second))
+                .isFalse();
+    }
+
+    @Test
+    void ignoresOtherPayloads() {
+        new GitHubCommitDateEventListener().recordCommitDates("refs/heads/main", hints);
+
+        assertThat(hints.size()).isZero();
+    }
+}
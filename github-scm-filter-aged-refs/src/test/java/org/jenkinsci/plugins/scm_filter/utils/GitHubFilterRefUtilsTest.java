@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMHeadOrigin;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.jenkinsci.plugins.github_branch_source.BranchSCMHead;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSource;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceContext;
+import org.jenkinsci.plugins.github_branch_source.GitHubSCMSourceRequest;
+import org.jenkinsci.plugins.github_branch_source.PullRequestSCMHead;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHubBuilder;
+
+@WithJenkins
+class GitHubFilterRefUtilsTest {
+
+    private static final String FRESH = "6666666666666666666666666666666666666666";
+
+    private static final long THRESHOLD = Instant.parse("2026-09-01T00:00:00Z").toEpochMilli();
+
+    private HttpServer server;
+
+    private final List<String> commitRequests = new CopyOnWriteArrayList<>();
+
+    private GitHubSCMSource source;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/v3/repos/owner/repo", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring("/api/v3/repos/owner/repo".length());
+        String response;
+        if (path.isEmpty()) {
+            response = "repository.json";
+        } else if (path.startsWith("/pulls/")) {
+            response = "pull_" + path.substring("/pulls/".length()) + ".json";
+        } else if (path.equals("/commits/" + FRESH)) {
+            commitRequests.add(path);
+            response = "commit.json";
+        } else {
+            commitRequests.add(path);
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes;
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/" + response)) {
+            bytes = res.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private GitHubSCMSourceRequest request(int... numbers) throws IOException {
+        GHRepository repository = new GitHubBuilder()
+                .withEndpoint("http://localhost:" + server.getAddress().getPort() + "/api/v3")
+                .build()
+                .getRepository("owner/repo");
+        List<GHPullRequest> pulls = new ArrayList<>();
+        for (int number : numbers) {
+            pulls.add(repository.getPullRequest(number));
+        }
+        source = new GitHubSCMSource("owner", "repo");
+        GitHubSCMSourceRequest request = new GitHubSCMSourceContext(null, SCMHeadObserver.none())
+                .wantOriginPRs(true)
+                .newRequest(source, TaskListener.NULL);
+        request.setPullRequests(pulls);
+        return request;
+    }
+
+    @Test
+    void excludesNotUpdatedPullRequestWithoutLookup(JenkinsRule ignoredRule) throws Exception {
+        GitHubSCMSourceRequest request = request(1);
+
+        assertThat(GitHubFilterRefUtils.isPullRequestExcluded(
+                        request, source, head(1), THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true))
+                .isTrue();
+        assertThat(commitRequests).isEmpty();
+    }
+
+    @Test
+    void prefetchSkipsNotUpdatedPullRequests(JenkinsRule ignoredRule) throws Exception {
+        GitHubSCMSourceRequest request = request(1, 2);
+
+        GitHubFilterRefUtils.prefetchPullRequests(
+                request, source, THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true);
+        // waits for the prefetched head
+        assertThat(GitHubFilterRefUtils.isPullRequestExcluded(
+                        request, source, head(2), THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true))
+                .isFalse();
+
+        assertThat(commitRequests).containsExactly("/commits/" + FRESH);
+    }
+
+    private static PullRequestSCMHead head(int number) {
+        return new PullRequestSCMHead(
+                "PR-" + number,
+                "owner",
+                "repo",
+                "feature-" + number,
+                number,
+                new BranchSCMHead("main"),
+                SCMHeadOrigin.DEFAULT,
+                ChangeRequestCheckoutStrategy.HEAD);
+    }
+}
@@ -13,11 +13,12 @@ import jenkins.scm.api.trait.SCMSourceContext;
 import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.impl.trait.Selection;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GitLabFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-public class GitLabAgedPullRequestsTrait extends AgedTypeRefsTrait {
+public class GitLabAgedPullRequestsTrait extends AgedPullRequestsTrait {
     private static final RefType REF_TYPE = RefType.PULL_REQUEST;
 
     /**
@@ -33,7 +34,11 @@ public class GitLabAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldPullRequestsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(withPullRequestSettings(
+                            new ExcludeOldPullRequestsSCMHeadFilter(retentionDays, pullRequestAgeSource))),
+                    REF_TYPE);
         }
     }
 
@@ -41,7 +46,7 @@ public class GitLabAgedPullRequestsTrait extends AgedTypeRefsTrait {
     @Selection
     @Symbol("gitLabAgedPullRequestsTrait")
     @SuppressWarnings("unused") // instantiated by Jenkins
-    public static class DescriptorImpl extends AgedRefsDescriptorImpl {
+    public static class DescriptorImpl extends AgedPullRequestsDescriptorImpl {
 
         @Override
         public Class<? extends SCMSourceContext> getContextClass() {
@@ -53,6 +58,11 @@ public class GitLabAgedPullRequestsTrait extends AgedTypeRefsTrait {
             return GitLabSCMSource.class;
         }
 
+        @Override
+        public boolean isPullRequestAgeSourceSupported() {
+            return true;
+        }
+
         @Override
         @NonNull
         public String getDisplayName() {
@@ -71,18 +81,31 @@ public class GitLabAgedPullRequestsTrait extends AgedTypeRefsTrait {
      */
     private static class ExcludeOldPullRequestsSCMHeadFilter extends ExcludeReferencesSCMHeadFilter {
 
-        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldPullRequestsSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
+        }
+
+        @Override
+        protected void prefetch(@NonNull SCMSourceRequest scmSourceRequest) throws IOException, InterruptedException {
+            GitLabFilterRefUtils.prefetchPullRequests(
+                    (GitLabSCMSourceRequest) scmSourceRequest,
+                    getSource(),
+                    getAcceptableDateTimeThreshold(),
+                    getPullRequestAgeSource(),
+                    isExcludeNotUpdated());
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof MergeRequestSCMHead) {
                 return GitLabFilterRefUtils.isPullRequestExcluded(
                         (GitLabSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (MergeRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource(),
+                        isExcludeNotUpdated());
             }
             return false;
         }
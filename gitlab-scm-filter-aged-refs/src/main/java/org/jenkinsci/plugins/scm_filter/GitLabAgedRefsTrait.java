@@ -16,6 +16,8 @@ import jenkins.scm.api.trait.SCMSourceContext;
 import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.impl.trait.Selection;
 import org.jenkinsci.Symbol;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
 import org.jenkinsci.plugins.scm_filter.utils.GitLabFilterRefUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -37,7 +39,11 @@ public class GitLabAgedRefsTrait extends AgedRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldBranchesSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context,
+                    withBudget(withPullRequestSettings(
+                            new ExcludeOldBranchesSCMHeadFilter(retentionDays, pullRequestAgeSource))),
+                    RefType.values());
         }
     }
 
@@ -59,6 +65,11 @@ public class GitLabAgedRefsTrait extends AgedRefsTrait {
         public Class<? extends SCMSource> getSourceClass() {
             return GitLabSCMSource.class;
         }
+
+        @Override
+        public boolean isPullRequestAgeSourceSupported() {
+            return true;
+        }
     }
 
     /**
@@ -66,12 +77,22 @@ public class GitLabAgedRefsTrait extends AgedRefsTrait {
      */
     private static class ExcludeOldBranchesSCMHeadFilter extends ExcludeBranchesSCMHeadFilter {
 
-        ExcludeOldBranchesSCMHeadFilter(int retentionDays) {
-            super(retentionDays);
+        ExcludeOldBranchesSCMHeadFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected void prefetch(@NonNull SCMSourceRequest scmSourceRequest) throws IOException, InterruptedException {
+            GitLabFilterRefUtils.prefetchPullRequests(
+                    (GitLabSCMSourceRequest) scmSourceRequest,
+                    getSource(),
+                    getAcceptableDateTimeThreshold(),
+                    getPullRequestAgeSource(),
+                    isExcludeNotUpdated());
+        }
+
+        @Override
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof BranchSCMHead) {
                 return GitLabFilterRefUtils.isBranchExcluded(
@@ -81,8 +102,11 @@ public class GitLabAgedRefsTrait extends AgedRefsTrait {
             } else if (scmHead instanceof MergeRequestSCMHead) {
                 return GitLabFilterRefUtils.isPullRequestExcluded(
                         (GitLabSCMSourceRequest) scmSourceRequest,
+                        getSource(),
                         (MergeRequestSCMHead) scmHead,
-                        getAcceptableDateTimeThreshold());
+                        getAcceptableDateTimeThreshold(),
+                        getPullRequestAgeSource(),
+                        isExcludeNotUpdated());
             } else if (scmHead instanceof GitLabTagSCMHead) {
                 return GitLabFilterRefUtils.isTagExcluded((GitLabTagSCMHead) scmHead, getAcceptableDateTimeThreshold());
             }
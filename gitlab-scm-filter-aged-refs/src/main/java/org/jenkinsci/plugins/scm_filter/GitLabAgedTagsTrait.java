@@ -32,7 +32,8 @@ public class GitLabAgedTagsTrait extends AgedTypeRefsTrait {
     @Override
     protected void decorateContext(SCMSourceContext<?, ?> context) {
         if (retentionDays > 0) {
-            context.withFilter(new ExcludeOldTagsSCMHeadFilter(retentionDays));
+            AgedRefsFilterCoordinator.register(
+                    context, withBudget(new ExcludeOldTagsSCMHeadFilter(retentionDays)), REF_TYPE);
         }
     }
 
@@ -75,7 +76,7 @@ public class GitLabAgedTagsTrait extends AgedTypeRefsTrait {
         }
 
         @Override
-        public boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException {
             if (scmHead instanceof GitLabTagSCMHead) {
                 return GitLabFilterRefUtils.isTagExcluded((GitLabTagSCMHead) scmHead, getAcceptableDateTimeThreshold());
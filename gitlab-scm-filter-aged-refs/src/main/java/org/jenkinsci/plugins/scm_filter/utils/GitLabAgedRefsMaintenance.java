@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+
+/**
+ * Maintenance of the caches of the GitLab plugin.
+ */
+@Extension
+public class GitLabAgedRefsMaintenance extends AgedRefsMaintenance {
+
+    public GitLabAgedRefsMaintenance() {
+        super("GitLab");
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void open() {
+        openStore(GitLabAgedRefsMaintenance.class);
+    }
+
+    @Terminator
+    public static void close() {
+        closeStore();
+    }
+}
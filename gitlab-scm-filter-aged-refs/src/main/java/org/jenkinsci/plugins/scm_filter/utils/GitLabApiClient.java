@@ -0,0 +1,177 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ProxyConfiguration;
+import hudson.Util;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import org.gitlab4j.api.GitLabApi;
+
+/**
+ * Minimal GitLab API client for the endpoints gitlab4j does not expose with the parameters we need, authenticated
+ * with the token of the {@link GitLabApi} of a request.
+ */
+final class GitLabApiClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    static final int PAGE_SIZE = 100;
+
+    static final int MAX_PAGES = 10;
+
+    private static final Map<SCMSourceRequest, GitLabApiClient> CLIENTS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final URI apiUri;
+
+    @CheckForNull
+    private final String token;
+
+    private final HttpClient httpClient;
+
+    private final RateLimitScheduler scheduler;
+
+    GitLabApiClient(@NonNull URI apiUri, @CheckForNull String token, @NonNull HttpClient httpClient) {
+        // the API of a request does not tell which credentials its token comes from, the token identifies the quota
+        this(
+                apiUri,
+                token,
+                httpClient,
+                RateLimitScheduler.of(apiUri + "::" + (token == null ? "anonymous" : Util.getDigestOf(token))));
+    }
+
+    GitLabApiClient(
+            @NonNull URI apiUri,
+            @CheckForNull String token,
+            @NonNull HttpClient httpClient,
+            @NonNull RateLimitScheduler scheduler) {
+        this.apiUri = apiUri;
+        this.token = token;
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Gets the client of a request, created only once per request.
+     *
+     * @param request the request
+     * @param api the API of the request
+     * @return the client
+     */
+    @NonNull
+    static GitLabApiClient of(@NonNull SCMSourceRequest request, @NonNull GitLabApi api) {
+        return CLIENTS.computeIfAbsent(request, r -> forApi(api));
+    }
+
+    @NonNull
+    static GitLabApiClient forApi(@NonNull GitLabApi api) {
+        String server = api.getGitLabServerUrl();
+        if (server.endsWith("/")) {
+            server = server.substring(0, server.length() - 1);
+        }
+        return new GitLabApiClient(
+                URI.create(server + api.getApiVersion().getApiNamespace()),
+                Util.fixEmpty(api.getAuthToken()),
+                ProxyConfiguration.newHttpClient());
+    }
+
+    /**
+     * Fetches the committed date of a commit without its diff statistics, which GitLab computes and returns by
+     * default.
+     *
+     * @param projectId the project the commit belongs to
+     * @param sha the commit SHA
+     * @return the committed date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if the commit has none
+     * @throws IOException if the request failed
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    long getCommitDate(long projectId, @NonNull String sha) throws IOException, InterruptedException {
+        return send(
+                "/projects/" + projectId + "/repository/commits/" + sha + "?stats=false",
+                "/projects/:id/repository/commits/:sha",
+                response -> CommitDateJsonReader.readDate(response.body(), "committed_date"));
+    }
+
+    /**
+     * Lists the commits of all branches and tags of a project committed since a date, {@value #PAGE_SIZE} per page,
+     * until the given commits are all found or after {@value #MAX_PAGES} pages.
+     *
+     * @param projectId the project
+     * @param since the earliest committed date in epoch milliseconds
+     * @param shas the commits to find
+     * @return the committed dates in epoch milliseconds of the given commits found, by SHA
+     * @throws IOException if a request failed
+     * @throws InterruptedException if interrupted while waiting for a response
+     */
+    @NonNull
+    Map<String, Long> getCommitDatesSince(long projectId, long since, @NonNull Collection<String> shas)
+            throws IOException, InterruptedException {
+        Map<String, Long> dates = new HashMap<>();
+        String page = "1";
+        for (int pages = 0; page != null && pages < MAX_PAGES && dates.size() < shas.size(); pages++) {
+            String path = "/projects/" + projectId + "/repository/commits?all=true&since=" + Instant.ofEpochMilli(since)
+                    + "&per_page=" + PAGE_SIZE + "&page=" + page;
+            page = send(path, "/projects/:id/repository/commits", response -> {
+                CommitDateJsonReader.readDates(response.body(), "id", "committed_date")
+                        .forEach((sha, date) -> {
+                            if (shas.contains(sha)) {
+                                dates.put(sha, date);
+                            }
+                        });
+                // the header is empty on the last page
+                return Util.fixEmpty(response.headers().firstValue("X-Next-Page").orElse(null));
+            });
+        }
+        return dates;
+    }
+
+    /**
+     * Sends a GET request within the rate limit of the credentials, retrying transient failures.
+     */
+    private <T> T send(String path, String endpoint, ResponseReader<T> reader)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(apiUri + path))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json")
+                .GET();
+        if (token != null) {
+            // personal, project and group access tokens are accepted as bearer tokens as well
+            builder.header("Authorization", "Bearer " + token);
+        }
+        HttpRequest request = builder.build();
+        return LookupRetry.call(apiUri + endpoint, () -> {
+            HttpResponse<InputStream> response;
+            // this client is the lane of the source of its request
+            try (RateLimitScheduler.Permit permit = scheduler.acquire(this)) {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                permit.complete(response.statusCode(), response.headers());
+            }
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new HttpStatusException(
+                            response.statusCode(),
+                            "GET " + request.uri() + " failed with HTTP " + response.statusCode());
+                }
+                return reader.read(response);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(HttpResponse<InputStream> response) throws IOException;
+    }
+}
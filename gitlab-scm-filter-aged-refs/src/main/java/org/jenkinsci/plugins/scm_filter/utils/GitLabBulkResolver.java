@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.gitlabbranchsource.GitLabSCMSourceRequest;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMSource;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.models.MergeRequest;
+
+/**
+ * Resolves the head commit dates of the merge requests of a request grouped by source project, listing the commits of
+ * each project committed since the threshold once rather than looking up each head.
+ * <p>
+ * A head missing from the listing is not necessarily older than the threshold, its source branch may have been deleted
+ * or force pushed, so these stragglers are left to the lookups of single commits.
+ */
+final class GitLabBulkResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(GitLabBulkResolver.class.getName());
+
+    /**
+     * Smallest number of merge requests from a project for which listing its commits is worth it, a single head is
+     * cheaper to look up on its own.
+     */
+    static final int MIN_MERGE_REQUESTS = 2;
+
+    private final GitLabApiClient client;
+
+    GitLabBulkResolver(@NonNull GitLabApiClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Prefetches the head commit dates of the merge requests of a request into its index, the first time a filter of
+     * the request asks. Failures are logged and leave the heads of the project to the lookups of single commits.
+     * Requests {@linkplain TargetedHeads targeting} a few merge requests skip the prefetch. Heads held by the local
+     * cache repository of the source are read from it first, and only the projects of the heads still missing are
+     * listed.
+     *
+     * @param request the request
+     * @param source the source of the request, if known
+     * @param acceptableDateTimeThreshold the threshold, commits older than it are not listed
+     * @throws IOException if another prefetch of the request failed
+     * @throws InterruptedException if interrupted while prefetching
+     */
+    static void prefetch(
+            @NonNull GitLabSCMSourceRequest request, @CheckForNull SCMSource source, long acceptableDateTimeThreshold)
+            throws IOException, InterruptedException {
+        GitLabApi api = request.getGitLabApi();
+        if (api == null || TargetedHeads.isTargeted(request.getRequestedMergeRequestNumbers())) {
+            return;
+        }
+        RefTimestampIndex.of(request).prefetchOnce(index -> {
+            File cacheRepository = LocalCommitDates.getCacheRepository(source);
+            if (cacheRepository != null) {
+                // the dates read are cached, so that their heads are not grouped below
+                resolveLocally(
+                        index,
+                        cacheRepository,
+                        request.getMergeRequests(),
+                        request.getRequestedMergeRequestNumbers());
+            }
+            GitLabBulkResolver resolver = new GitLabBulkResolver(GitLabApiClient.of(request, api));
+            Map<Long, List<String>> heads = groupBySourceProject(
+                    request.getMergeRequests(),
+                    request.getRequestedMergeRequestNumbers(),
+                    acceptableDateTimeThreshold);
+            for (Map.Entry<Long, List<String>> project : heads.entrySet()) {
+                try {
+                    resolver.fetchCommitDates(project.getKey(), acceptableDateTimeThreshold, project.getValue())
+                            .forEach(index::putCommitDate);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(
+                            Level.FINE,
+                            "Could not prefetch head commit dates of the merge requests from project "
+                                    + project.getKey() + ", falling back to single commits",
+                            e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the head commit dates of the requested merge requests from a local repository into an index.
+     *
+     * @param index the index
+     * @param repository the git directory of the local repository
+     * @param mergeRequests the merge requests
+     * @param requested the requested merge request numbers, {@code null} if all are requested
+     */
+    private static void resolveLocally(
+            @NonNull RefTimestampIndex index,
+            @NonNull File repository,
+            @NonNull Iterable<MergeRequest> mergeRequests,
+            @CheckForNull Set<Long> requested) {
+        Set<String> heads = new HashSet<>();
+        for (MergeRequest mr : mergeRequests) {
+            if (mr.getSha() != null && TargetedHeads.isRequested(requested, mr.getIid())) {
+                heads.add(mr.getSha());
+            }
+        }
+        LocalCommitDates.getCommitDates(repository, heads).forEach(index::putCommitDate);
+    }
+
+    /**
+     * Groups the heads of the requested merge requests by source project, keeping only the projects with at least
+     * {@value #MIN_MERGE_REQUESTS} heads the listing can find. Heads whose date is already cached are left out, and so
+     * are the merge requests not updated since the threshold: pushing to a merge request updates it, so their heads
+     * are older than the threshold and not listed.
+     *
+     * @param mergeRequests the merge requests
+     * @param requested the requested merge request numbers, {@code null} if all are requested
+     * @param acceptableDateTimeThreshold the threshold
+     * @return the head SHAs by source project id
+     */
+    @NonNull
+    static Map<Long, List<String>> groupBySourceProject(
+            @NonNull Iterable<MergeRequest> mergeRequests,
+            @CheckForNull Set<Long> requested,
+            long acceptableDateTimeThreshold) {
+        Map<Long, List<String>> heads = new TreeMap<>();
+        for (MergeRequest mr : mergeRequests) {
+            if (mr.getSourceProjectId() == null
+                    || mr.getSha() == null
+                    || !TargetedHeads.isRequested(requested, mr.getIid())
+                    || mr.getUpdatedAt() != null && mr.getUpdatedAt().getTime() < acceptableDateTimeThreshold
+                    || CommitDateCache.get().getCommitDate(mr.getSha()) != RefTimestampIndex.UNKNOWN) {
+                continue;
+            }
+            List<String> shas = heads.computeIfAbsent(mr.getSourceProjectId(), id -> new ArrayList<>());
+            if (!shas.contains(mr.getSha())) {
+                shas.add(mr.getSha());
+            }
+        }
+        heads.values().removeIf(shas -> shas.size() < MIN_MERGE_REQUESTS);
+        return heads;
+    }
+
+    /**
+     * Fetches the commit dates of heads of a project committed since a date.
+     *
+     * @param projectId the source project
+     * @param since the earliest committed date in epoch milliseconds
+     * @param shas the heads
+     * @return the commit dates in epoch milliseconds of the heads found, by SHA
+     * @throws IOException if a request failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    @NonNull
+    Map<String, Long> fetchCommitDates(long projectId, long since, @NonNull Collection<String> shas)
+            throws IOException, InterruptedException {
+        if (shas.isEmpty()) {
+            return new HashMap<>();
+        }
+        return client.getCommitDatesSince(projectId, since, Set.copyOf(shas));
+    }
+}
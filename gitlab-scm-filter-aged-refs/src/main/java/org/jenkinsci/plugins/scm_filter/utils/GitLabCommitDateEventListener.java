@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import java.util.List;
+import org.gitlab4j.api.webhook.AbstractPushEvent;
+import org.gitlab4j.api.webhook.EventCommit;
+import org.gitlab4j.api.webhook.MergeRequestEvent;
+
+/**
+ * Records the dates of the pushed commits of GitLab push and tag push events, and of the last commit of merge request
+ * events, which GitLab sets to the committer dates of the commits. The dates are scoped to the id of the project pushed
+ * to, the source project of merge requests.
+ */
+@Extension(ordinal = CommitDateEventListener.ORDINAL)
+public class GitLabCommitDateEventListener extends CommitDateEventListener {
+
+    @Override
+    protected void recordCommitDates(@NonNull Object payload, @NonNull CommitDateHints hints) {
+        if (payload instanceof AbstractPushEvent) {
+            AbstractPushEvent push = (AbstractPushEvent) payload;
+            List<EventCommit> commits = push.getCommits();
+            if (commits != null) {
+                for (EventCommit commit : commits) {
+                    record(push.getProjectId(), commit, hints);
+                }
+            }
+        } else if (payload instanceof MergeRequestEvent) {
+            MergeRequestEvent.ObjectAttributes attributes = ((MergeRequestEvent) payload).getObjectAttributes();
+            if (attributes != null) {
+                record(attributes.getSourceProjectId(), attributes.getLastCommit(), hints);
+            }
+        }
+    }
+
+    private static void record(@CheckForNull Long projectId, @CheckForNull EventCommit commit, CommitDateHints hints) {
+        if (projectId != null && commit != null && commit.getId() != null && commit.getTimestamp() != null) {
+            hints.put(String.valueOf(projectId), commit.getId(), commit.getTimestamp().getTime());
+        }
+    }
+}
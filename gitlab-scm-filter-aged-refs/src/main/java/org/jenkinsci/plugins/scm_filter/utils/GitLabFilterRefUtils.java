@@ -1,56 +1,223 @@
 package org.jenkinsci.plugins.scm_filter.utils;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import io.jenkins.plugins.gitlabbranchsource.BranchSCMHead;
 import io.jenkins.plugins.gitlabbranchsource.GitLabSCMSourceRequest;
 import io.jenkins.plugins.gitlabbranchsource.GitLabTagSCMHead;
 import io.jenkins.plugins.gitlabbranchsource.MergeRequestSCMHead;
 import java.io.IOException;
-import java.util.Optional;
-import java.util.stream.StreamSupport;
+import java.util.List;
+import java.util.Set;
+import jenkins.scm.api.SCMSource;
 import org.gitlab4j.api.GitLabApi;
 import org.gitlab4j.api.GitLabApiException;
 import org.gitlab4j.api.models.Branch;
 import org.gitlab4j.api.models.Commit;
 import org.gitlab4j.api.models.MergeRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 
 public class GitLabFilterRefUtils {
     public static boolean isBranchExcluded(
             GitLabSCMSourceRequest scmSourceRequest, BranchSCMHead scmHead, long acceptableDateTimeThreshold)
-            throws IOException {
-        Iterable<Branch> branches = scmSourceRequest.getBranches();
-        for (Branch branch : branches) {
-            long branchTS = branch.getCommit()
-                    .getCommittedDate()
-                    .getTime();
-            if (branch.getName().equals(scmHead.getName())) {
-                return branchTS < acceptableDateTimeThreshold;
-            }
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref branch = RefTimestampIndex.of(scmSourceRequest)
+                .findBranch(scmHead.getName(), builder -> {
+                    Set<String> requested = scmSourceRequest.getRequestedOriginBranchNames();
+                    for (Branch b : scmSourceRequest.getBranches()) {
+                        if (TargetedHeads.isRequested(requested, b.getName())) {
+                            Commit commit = b.getCommit();
+                            builder.addCommit(b.getName(), commit.getId(), commit.getCommittedDate().getTime(), null);
+                        }
+                    }
+                });
+        if (branch == null) {
+            return false;
         }
-        return false;
+        return branch.getTimestamp() < acceptableDateTimeThreshold;
     }
 
     public static boolean isPullRequestExcluded(
-            GitLabSCMSourceRequest scmSourceRequest, MergeRequestSCMHead scmHead, long acceptableDateTimeThreshold) {
-            String pullNr = scmHead.getId();
-        Iterable<MergeRequest> mrs = scmSourceRequest.getMergeRequests();
-        Optional<MergeRequest> mr = StreamSupport.stream(mrs.spliterator(), false)
-                .filter(p -> pullNr.equals(Long.toString(p.getId())))
-                .findAny();
-        return mr.filter(mergeRequest -> isMrExcluded(scmSourceRequest, mergeRequest, acceptableDateTimeThreshold)).isPresent();
+            GitLabSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            MergeRequestSCMHead scmHead,
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource,
+            boolean excludeNotUpdated)
+            throws IOException, InterruptedException {
+        RefTimestampIndex.Ref ref = RefTimestampIndex.of(scmSourceRequest)
+                .findPullRequest(Long.parseLong(scmHead.getId()), mergeRequests(scmSourceRequest));
+        MergeRequest mr = ref == null ? null : ref.getSource(MergeRequest.class);
+        if (mr == null) {
+            return false;
+        }
+        PullRequestAgeSource ageSource = getAgeSource(pullRequestAgeSource);
+        if (ageSource == PullRequestAgeSource.UPDATED_AT) {
+            // updates do not move the head, they cannot be decided from a previous scan
+            return isNotUpdatedSince(mr, acceptableDateTimeThreshold);
+        }
+        if (excludeNotUpdated && isNotUpdatedSince(mr, acceptableDateTimeThreshold)) {
+            return true;
+        }
+        HeadDecisions decisions = HeadDecisions.of(source);
+        String key = HeadDecisions.keyOf(scmHead);
+        Boolean decided = decisions.isExcluded(key, ref.getHash(), ageSource, acceptableDateTimeThreshold);
+        if (decided != null) {
+            return decided;
+        }
+        if (isHintedRecent(mr, ref, acceptableDateTimeThreshold)) {
+            return false;
+        }
+        if (ageSource == PullRequestAgeSource.COMMIT_HISTORY) {
+            long newestTS;
+            try {
+                newestTS = getMrNewestCommitTimestamp(scmSourceRequest, mr);
+            } catch (IOException e) {
+                return UnresolvedHeads.decide(
+                        scmSourceRequest, decisions, scmHead, ref.getHash(), ageSource, acceptableDateTimeThreshold, e);
+            }
+            decisions.record(key, ref.getHash(), ageSource, newestTS, true);
+            return newestTS != RefTimestampIndex.UNKNOWN && newestTS < acceptableDateTimeThreshold;
+        }
+        long pullTS;
+        try {
+            pullTS = getMrTimestamp(scmSourceRequest, source, ref, mr, acceptableDateTimeThreshold);
+        } catch (IOException e) {
+            return UnresolvedHeads.decide(
+                    scmSourceRequest, decisions, scmHead, ref.getHash(), ageSource, acceptableDateTimeThreshold, e);
+        }
+        decisions.record(key, ref.getHash(), ageSource, pullTS, true);
+        return pullTS != RefTimestampIndex.UNKNOWN && pullTS < acceptableDateTimeThreshold;
+    }
+
+    /**
+     * Starts resolving the head commit dates of the merge requests not decided by a previous scan, when their age is
+     * taken from the head commit, after the listings of the commits of their source projects covered what they could.
+     * Merge requests not updated since the threshold are skipped when they are excluded for it.
+     */
+    public static void prefetchPullRequests(
+            GitLabSCMSourceRequest scmSourceRequest,
+            @CheckForNull SCMSource source,
+            long acceptableDateTimeThreshold,
+            @CheckForNull PullRequestAgeSource pullRequestAgeSource,
+            boolean excludeNotUpdated)
+            throws IOException, InterruptedException {
+        GitLabApi api = scmSourceRequest.getGitLabApi();
+        if (api == null || getAgeSource(pullRequestAgeSource) != PullRequestAgeSource.HEAD_COMMIT) {
+            return;
+        }
+        GitLabBulkResolver.prefetch(scmSourceRequest, source, acceptableDateTimeThreshold);
+        GitLabApiClient client = GitLabApiClient.of(scmSourceRequest, api);
+        HeadDecisions decisions = HeadDecisions.of(source);
+        RefTimestampIndex.of(scmSourceRequest)
+                .prefetchPullRequests(source, mergeRequests(scmSourceRequest), (iid, ref) -> {
+                    MergeRequest mr = ref.getSource(MergeRequest.class);
+                    if (mr == null
+                            || mr.getSourceProjectId() == null
+                            || excludeNotUpdated && isNotUpdatedSince(mr, acceptableDateTimeThreshold)) {
+                        return null;
+                    }
+                    Boolean decided = decisions.isChangeRequestExcluded(
+                            String.valueOf(iid),
+                            ref.getHash(),
+                            PullRequestAgeSource.HEAD_COMMIT,
+                            acceptableDateTimeThreshold);
+                    return decided != null || isHintedRecent(mr, ref, acceptableDateTimeThreshold)
+                            ? null
+                            : commitDateLoader(client, mr);
+                });
+    }
+
+    /**
+     * Indexes the listed merge requests the request targets, so that a scan processing an event only prefetches the
+     * head of the merge request it is about. Merge requests are indexed by their iid, which numbers them within their
+     * project and is the id of their heads, rather than by their global id.
+     */
+    private static RefTimestampIndex.Populator<Long> mergeRequests(GitLabSCMSourceRequest scmSourceRequest) {
+        return builder -> {
+            Set<Long> requested = scmSourceRequest.getRequestedMergeRequestNumbers();
+            for (MergeRequest m : scmSourceRequest.getMergeRequests()) {
+                if (TargetedHeads.isRequested(requested, m.getIid())) {
+                    builder.add(m.getIid(), m.getSha(), RefTimestampIndex.UNKNOWN, m);
+                }
+            }
+        };
     }
 
-    private static boolean isMrExcluded(GitLabSCMSourceRequest gitLabSCMSourceRequest, MergeRequest mr, long acceptableDateTimeThreshold) {
+    /**
+     * Tells whether the listing gives a merge request a last update older than the threshold. Pushing to a merge
+     * request updates it, so its commits are at least as old.
+     */
+    private static boolean isNotUpdatedSince(MergeRequest mr, long acceptableDateTimeThreshold) {
+        return mr.getUpdatedAt() != null && mr.getUpdatedAt().getTime() < acceptableDateTimeThreshold;
+    }
+
+    /**
+     * Tells whether an event recently reported the head commit of a merge request, pushed to its source project, as
+     * not older than the threshold. Event dates are not verified, so such a head is kept without recording a decision
+     * for it.
+     */
+    private static boolean isHintedRecent(
+            MergeRequest mr, RefTimestampIndex.Ref ref, long acceptableDateTimeThreshold) {
+        return mr.getSourceProjectId() != null
+                && CommitDateHints.get()
+                        .isRecent(String.valueOf(mr.getSourceProjectId()), ref.getHash(), acceptableDateTimeThreshold);
+    }
+
+    private static PullRequestAgeSource getAgeSource(@CheckForNull PullRequestAgeSource pullRequestAgeSource) {
+        return pullRequestAgeSource == null ? PullRequestAgeSource.HEAD_COMMIT : pullRequestAgeSource;
+    }
+
+    /**
+     * Resolves the commit date of the merge request head once per SHA and request. The first resolution of a request
+     * lists the recent commits of the source projects of several merge requests at once, later ones go through the
+     * cheaper {@link RefAgeResolver}s first, such as the cache repository of the source, otherwise without the diff
+     * statistics the commit endpoint computes by default. Without API access, only the cheaper resolvers are consulted.
+     */
+    private static long getMrTimestamp(
+            GitLabSCMSourceRequest gitLabSCMSourceRequest,
+            @CheckForNull SCMSource source,
+            RefTimestampIndex.Ref ref,
+            MergeRequest mr,
+            long acceptableDateTimeThreshold)
+            throws IOException, InterruptedException {
+        if (ref.getTimestamp() == RefTimestampIndex.UNKNOWN) {
+            GitLabBulkResolver.prefetch(gitLabSCMSourceRequest, source, acceptableDateTimeThreshold);
+        }
+        GitLabApi api = gitLabSCMSourceRequest.getGitLabApi();
+        RefTimestampIndex.CommitDateLoader remote = api == null || mr.getSourceProjectId() == null
+                ? null
+                : commitDateLoader(GitLabApiClient.of(gitLabSCMSourceRequest, api), mr);
+        return RefTimestampIndex.of(gitLabSCMSourceRequest).resolve(ref, source, remote);
+    }
+
+    private static RefTimestampIndex.CommitDateLoader commitDateLoader(GitLabApiClient client, MergeRequest mr) {
+        return sha -> client.getCommitDate(mr.getSourceProjectId(), sha);
+    }
+
+    /**
+     * @return the date of the newest commit of the merge request or {@link RefTimestampIndex#UNKNOWN} if it has no
+     *     commits
+     * @throws IOException if the commits could not be listed, after retrying transient failures
+     */
+    private static long getMrNewestCommitTimestamp(GitLabSCMSourceRequest gitLabSCMSourceRequest, MergeRequest mr)
+            throws IOException, InterruptedException {
         GitLabApi api = gitLabSCMSourceRequest.getGitLabApi();
         if (api == null) {
-            return false;
+            return RefTimestampIndex.UNKNOWN;
         }
-        try {
-            Commit commit = api.getCommitsApi().getCommit(mr.getSourceProjectId(), mr.getSha());
-            long pullTS = commit.getCommittedDate().getTime();
-            return pullTS < acceptableDateTimeThreshold;
-        } catch (GitLabApiException e) {
-            return false;
+        List<Commit> commits =
+                LookupRetry.call(api.getGitLabServerUrl() + "/api/v4/projects/:id/merge_requests/:iid/commits", () -> {
+                    try {
+                        return api.getMergeRequestApi().getCommits(mr.getProjectId(), mr.getIid());
+                    } catch (GitLabApiException e) {
+                        throw new HttpStatusException(e.getHttpStatus(), e.getMessage(), e);
+                    }
+                });
+        long newestTS = RefTimestampIndex.UNKNOWN;
+        for (Commit commit : commits) {
+            newestTS = Math.max(newestTS, commit.getCommittedDate().getTime());
         }
+        return newestTS;
     }
 
     public static boolean isTagExcluded(GitLabTagSCMHead scmHead, long acceptableDateTimeThreshold) {
@@ -23,6 +23,16 @@ class GitLabAgedPullRequestsTraitTest {
         assertThat(instance.getTraits())
                 .singleElement()
                 .isInstanceOf(GitLabAgedPullRequestsTrait.class)
-                .hasFieldOrPropertyWithValue("retentionDays", 30);
+                .hasFieldOrPropertyWithValue("retentionDays", 30)
+                .hasFieldOrPropertyWithValue("excludeNotUpdated", false);
+    }
+
+    @Test
+    void restoreExcludeNotUpdated() throws IOException {
+        GitLabSCMSource instance = load("exclude_pull_requests_not_updated.xml");
+        assertThat(instance.getTraits())
+                .singleElement()
+                .isInstanceOf(GitLabAgedPullRequestsTrait.class)
+                .hasFieldOrPropertyWithValue("excludeNotUpdated", true);
     }
 }
@@ -0,0 +1,130 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.gitlab4j.api.models.MergeRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GitLabBulkResolverTest {
+
+    private static final String FIRST = "1111111111111111111111111111111111111111";
+
+    private static final String THIRD = "3333333333333333333333333333333333333333";
+
+    private static final String MISSING = "4444444444444444444444444444444444444444";
+
+    private static final long THRESHOLD = Instant.parse("2023-12-01T00:00:00Z").toEpochMilli();
+
+    private HttpServer server;
+
+    private final List<URI> requests = new ArrayList<>();
+
+    private final List<String> authorizations = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/v4/projects/7/repository/commits", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestURI());
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        boolean first = !exchange.getRequestURI().getQuery().contains("&page=2");
+        byte[] bytes;
+        try (InputStream res = getClass()
+                .getResourceAsStream(getClass().getSimpleName() + "/commits_page" + (first ? 1 : 2) + ".json")) {
+            bytes = res.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Next-Page", first ? "2" : "");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private GitLabBulkResolver resolver() {
+        URI api = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/v4");
+        return new GitLabBulkResolver(new GitLabApiClient(api, "secret", HttpClient.newHttpClient()));
+    }
+
+    @Test
+    void listsRecentCommitsOfProject() throws Exception {
+        Map<String, Long> dates = resolver().fetchCommitDates(7, THRESHOLD, List.of(FIRST, THIRD));
+
+        assertThat(dates)
+                .containsOnly(
+                        Map.entry(FIRST, Instant.parse("2024-01-01T10:00:00Z").toEpochMilli()),
+                        Map.entry(THIRD, Instant.parse("2023-12-15T08:00:00Z").toEpochMilli()));
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(0).getQuery())
+                .contains("all=true")
+                .contains("since=2023-12-01T00:00:00Z")
+                .contains("per_page=" + GitLabApiClient.PAGE_SIZE);
+        assertThat(authorizations).containsOnly("Bearer secret");
+    }
+
+    @Test
+    void stopsOnceAllHeadsAreFound() throws Exception {
+        assertThat(resolver().fetchCommitDates(7, THRESHOLD, List.of(FIRST))).containsOnlyKeys(FIRST);
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void leavesOutStragglers() throws Exception {
+        assertThat(resolver().fetchCommitDates(7, THRESHOLD, List.of(FIRST, MISSING)))
+                .containsOnlyKeys(FIRST);
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void groupsHeadsBySourceProject() {
+        List<MergeRequest> mergeRequests = List.of(
+                mergeRequest(1, 7, FIRST, THRESHOLD + 1000),
+                mergeRequest(2, 7, THIRD, THRESHOLD + 1000),
+                // same head as the first merge request
+                mergeRequest(3, 7, FIRST, THRESHOLD + 1000),
+                // not updated since the threshold, so its head is not listed
+                mergeRequest(4, 7, MISSING, THRESHOLD - 1000),
+                // the only merge request of its project
+                mergeRequest(5, 8, MISSING, THRESHOLD + 1000));
+
+        assertThat(GitLabBulkResolver.groupBySourceProject(mergeRequests, null, THRESHOLD))
+                .containsOnly(Map.entry(7L, List.of(FIRST, THIRD)));
+        assertThat(GitLabBulkResolver.groupBySourceProject(mergeRequests, Set.of(1L, 4L), THRESHOLD))
+                .isEmpty();
+    }
+
+    private static MergeRequest mergeRequest(long iid, long sourceProjectId, String sha, long updatedAt) {
+        MergeRequest mr = new MergeRequest();
+        mr.setIid(iid);
+        mr.setSourceProjectId(sourceProjectId);
+        mr.setSha(sha);
+        mr.setUpdatedAt(new Date(updatedAt));
+        return mr;
+    }
+}
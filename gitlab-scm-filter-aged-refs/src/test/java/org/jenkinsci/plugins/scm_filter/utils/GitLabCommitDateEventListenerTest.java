@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import org.gitlab4j.api.webhook.EventCommit;
+import org.gitlab4j.api.webhook.MergeRequestEvent;
+import org.gitlab4j.api.webhook.PushEvent;
+import org.junit.jupiter.api.Test;
+
+class GitLabCommitDateEventListenerTest {
+
+    private static final long FIRST = Instant.parse("2026-10-01T10:00:00Z").toEpochMilli();
+
+    private static final long SECOND = Instant.parse("2026-10-02T10:00:00Z").toEpochMilli();
+
+    private final CommitDateHints hints = new CommitDateHints();
+
+    @Test
+    void recordsPushedCommitDates() {
+        PushEvent push = new PushEvent();
+        push.setProjectId(7L);
+        push.setCommits(List.of(
+                commit("2222222222222222222222222222222222222222", FIRST),
+                commit("3333333333333333333333333333333333333333", SECOND)));
+
+        new GitLabCommitDateEventListener().recordCommitDates(push, hints);
+
+        assertThat(hints.isRecent("7", "2222222222222222222222222222222222222222", FIRST))
+                .isTrue();
+        assertThat(hints.isRecent("7", "2222222222222222222222222222222222222222", FIRST + 1))
+                .isFalse();
+        assertThat(hints.isRecent("7", "3333333333333333333333333333333333333333", SECOND))
+                .isTrue();
+        // the dates are only hints for the project pushed to
+        assertThat(hints.isRecent("8", "3333333333333333333333333333333333333333", SECOND))
+                .isFalse();
+    }
+
+    @Test
+    void recordsMergeRequestLastCommitDateUnderSourceProject() {
+        MergeRequestEvent.ObjectAttributes attributes = new MergeRequestEvent.ObjectAttributes();
+        // a merge request from a fork
+        attributes.setSourceProjectId(8L);
+        attributes.setTargetProjectId(7L);
+        attributes.setLastCommit(commit("4444444444444444444444444444444444444444", FIRST));
+        MergeRequestEvent event = new MergeRequestEvent();
+        event.setObjectAttributes(attributes);
+
+        new GitLabCommitDateEventListener().recordCommitDates(event, hints);
+
+        assertThat(hints.isRecent("8", "4444444444444444444444444444444444444444", FIRST))
+                .isTrue();
+        assertThat(hints.isRecent("8", "4444444444444444444444444444444444444444", FIRST + 1))
+                .isFalse();
+        // the commit lives in the fork, the target project does not vouch for it
+        assertThat(hints.isRecent("7", "4444444444444444444444444444444444444444", FIRST))
+                .isFalse();
+    }
+
+    @Test
+    void ignoresOtherPayloads() {
+        new GitLabCommitDateEventListener().recordCommitDates("refs/heads/main", hints);
+        new GitLabCommitDateEventListener().recordCommitDates(new MergeRequestEvent(), hints);
+
+        assertThat(hints.size()).isZero();
+    }
+
+    private static EventCommit commit(String sha, long timestamp) {
+        EventCommit commit = new EventCommit();
+        commit.setId(sha);
+        commit.setTimestamp(new Date(timestamp));
+        return commit;
+    }
+}
@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.TaskListener;
+import io.jenkins.plugins.gitlabbranchsource.BranchSCMHead;
+import io.jenkins.plugins.gitlabbranchsource.GitLabSCMSource;
+import io.jenkins.plugins.gitlabbranchsource.GitLabSCMSourceContext;
+import io.jenkins.plugins.gitlabbranchsource.GitLabSCMSourceRequest;
+import io.jenkins.plugins.gitlabbranchsource.MergeRequestSCMHead;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMHeadOrigin;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.gitlab4j.api.GitLabApi;
+import org.gitlab4j.api.models.MergeRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class GitLabFilterRefUtilsTest {
+
+    private static final String STALE = "5555555555555555555555555555555555555555";
+
+    private static final String FRESH = "6666666666666666666666666666666666666666";
+
+    private static final long THRESHOLD = Instant.parse("2026-09-01T00:00:00Z").toEpochMilli();
+
+    private HttpServer server;
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private GitLabSCMSource source;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/v4/projects/7/repository/commits", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestURI().getPath());
+        if (!exchange.getRequestURI().getPath().endsWith("/" + FRESH)) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes;
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/commit.json")) {
+            bytes = res.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private GitLabSCMSourceRequest request(MergeRequest... mergeRequests) {
+        source = new GitLabSCMSource("default", "owner", "owner/repo");
+        GitLabSCMSourceRequest request = new GitLabSCMSourceContext(null, SCMHeadObserver.none())
+                .wantOriginMRs(true)
+                .newRequest(source, TaskListener.NULL);
+        request.setMergeRequests(List.of(mergeRequests));
+        request.setGitLabApi(new GitLabApi("http://localhost:" + server.getAddress().getPort(), "secret"));
+        return request;
+    }
+
+    @Test
+    void excludesNotUpdatedMergeRequestWithoutLookup(JenkinsRule ignoredRule) throws Exception {
+        GitLabSCMSourceRequest request = request(mergeRequest(1, STALE, THRESHOLD - 1000));
+
+        assertThat(GitLabFilterRefUtils.isPullRequestExcluded(
+                        request, source, head(1), THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true))
+                .isTrue();
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    void prefetchSkipsNotUpdatedMergeRequests(JenkinsRule ignoredRule) throws Exception {
+        GitLabSCMSourceRequest request =
+                request(mergeRequest(1, STALE, THRESHOLD - 1000), mergeRequest(2, FRESH, THRESHOLD + 1000));
+
+        GitLabFilterRefUtils.prefetchPullRequests(
+                request, source, THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true);
+        // waits for the prefetched head
+        assertThat(GitLabFilterRefUtils.isPullRequestExcluded(
+                        request, source, head(2), THRESHOLD, PullRequestAgeSource.HEAD_COMMIT, true))
+                .isFalse();
+
+        assertThat(requests).containsExactly("/api/v4/projects/7/repository/commits/" + FRESH);
+    }
+
+    private static MergeRequest mergeRequest(long iid, String sha, long updatedAt) {
+        MergeRequest mr = new MergeRequest();
+        // the global id differs from the iid the heads are named after
+        mr.setId(1000 + iid);
+        mr.setIid(iid);
+        mr.setProjectId(7L);
+        mr.setSourceProjectId(7L);
+        mr.setSha(sha);
+        mr.setUpdatedAt(new Date(updatedAt));
+        return mr;
+    }
+
+    private static MergeRequestSCMHead head(long iid) {
+        return new MergeRequestSCMHead(
+                "MR-" + iid,
+                iid,
+                new BranchSCMHead("main"),
+                ChangeRequestCheckoutStrategy.HEAD,
+                SCMHeadOrigin.DEFAULT,
+                "owner",
+                "owner/repo",
+                "feature-" + iid,
+                "Merge request " + iid);
+    }
+}
@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.utils.FormValidationUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Pull request flavour of {@link AgedTypeRefsTrait}, letting the user choose where the pull request age comes from.
+ */
+public abstract class AgedPullRequestsTrait extends AgedTypeRefsTrait {
+
+    @CheckForNull
+    PullRequestAgeSource pullRequestAgeSource;
+
+    boolean excludeNotUpdated;
+
+    /**
+     * Constructor for stapler.
+     *
+     * @param retentionDays retention period in days
+     */
+    protected AgedPullRequestsTrait(String retentionDays) {
+        super(retentionDays);
+    }
+
+    @SuppressWarnings("unused") // used by Jelly EL
+    public String getPullRequestAgeSource() {
+        return FormValidationUtils.pullRequestAgeSourceToString(this.pullRequestAgeSource);
+    }
+
+    /**
+     * Setter for stapler.
+     *
+     * @param pullRequestAgeSource name of the {@link PullRequestAgeSource}, empty for the default of the SCM provider
+     */
+    @DataBoundSetter
+    public void setPullRequestAgeSource(String pullRequestAgeSource) {
+        this.pullRequestAgeSource = FormValidationUtils.parsePullRequestAgeSource(pullRequestAgeSource);
+    }
+
+    @SuppressWarnings("unused") // used by Jelly EL
+    public boolean isExcludeNotUpdated() {
+        return excludeNotUpdated;
+    }
+
+    /**
+     * Setter for stapler.
+     *
+     * @param excludeNotUpdated whether pull requests not updated within the retention period are excluded without
+     *     looking up their commits
+     */
+    @DataBoundSetter
+    public void setExcludeNotUpdated(boolean excludeNotUpdated) {
+        this.excludeNotUpdated = excludeNotUpdated;
+    }
+
+    /**
+     * Applies the pull request settings of this trait to a filter.
+     *
+     * @param filter the filter
+     * @return the filter
+     */
+    <F extends AgedRefsSCMHeadFilter> F withPullRequestSettings(F filter) {
+        filter.setExcludeNotUpdated(excludeNotUpdated);
+        return filter;
+    }
+
+    abstract static class AgedPullRequestsDescriptorImpl extends AgedRefsDescriptorImpl {
+
+        @Restricted(NoExternalUse.class)
+        @SuppressWarnings("unused") // used by Jelly EL
+        public ListBoxModel doFillPullRequestAgeSourceItems() {
+            return FormValidationUtils.fillPullRequestAgeSourceItems();
+        }
+
+        /**
+         * @return whether the SCM provider can take the pull request age from another source than its default one,
+         *     the option is hidden otherwise
+         */
+        @Restricted(NoExternalUse.class)
+        @SuppressWarnings("unused") // used by Jelly EL
+        public boolean isPullRequestAgeSourceSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.scm.api.mixin.TagSCMHead;
+import jenkins.scm.api.trait.SCMHeadFilter;
+import jenkins.scm.api.trait.SCMHeadPrefilter;
+import jenkins.scm.api.trait.SCMSourceContext;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
+
+/**
+ * Merges the filters of all aged refs traits of a context into a single filter and prefilter.
+ * <p>
+ * A source may combine the ref trait with the branch, pull request and tag traits. Rather than letting each of them
+ * evaluate every head, the coordinator evaluates a head once per age source, with the filter of the strictest
+ * retention among the traits covering its {@link RefType}. Since a head is excluded as soon as any filter excludes it,
+ * this takes the same decisions as the separate filters with a single round of lookups.
+ * <p>
+ * A context is built for a single source, which the SCM API only hands to the prefilters: a request consults them
+ * with its source before its filters. The coordinator prefilter binds its context to that source, so that the filters
+ * needing it, e.g. to look up its credentials, get it from their coordinator.
+ */
+public final class AgedRefsFilterCoordinator {
+
+    private static final Map<SCMSourceContext<?, ?>, AgedRefsFilterCoordinator> COORDINATORS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<Member> members = new CopyOnWriteArrayList<>();
+
+    @CheckForNull
+    private volatile SCMSource source;
+
+    private AgedRefsFilterCoordinator() {}
+
+    /**
+     * Registers the filter of a trait, adding the coordinator filter and prefilter to the context on first use.
+     *
+     * @param context the context being decorated
+     * @param filter the filter of the trait
+     * @param types the types of refs the trait applies to
+     */
+    public static void register(
+            @NonNull SCMSourceContext<?, ?> context, @NonNull AgedRefsSCMHeadFilter filter, @NonNull RefType... types) {
+        // the coordinator must not reference the context, otherwise the weak key would never be collected
+        AgedRefsFilterCoordinator coordinator = COORDINATORS.computeIfAbsent(context, c -> {
+            AgedRefsFilterCoordinator created = new AgedRefsFilterCoordinator();
+            c.withPrefilter(created.new CoordinatedPrefilter());
+            c.withFilter(created.new CoordinatedFilter());
+            return created;
+        });
+        EnumSet<RefType> covered = EnumSet.noneOf(RefType.class);
+        Collections.addAll(covered, types);
+        filter.setCoordinator(coordinator);
+        coordinator.members.add(new Member(filter, covered));
+    }
+
+    /**
+     * @return the source of the context, {@code null} if no request of the context consulted its prefilters yet
+     */
+    @CheckForNull
+    SCMSource getSource() {
+        return source;
+    }
+
+    @CheckForNull
+    static AgedRefsFilterCoordinator of(@NonNull SCMSourceContext<?, ?> context) {
+        return COORDINATORS.get(context);
+    }
+
+    @NonNull
+    static RefType typeOf(@NonNull SCMHead head) {
+        if (head instanceof ChangeRequestSCMHead) {
+            return RefType.PULL_REQUEST;
+        }
+        if (head instanceof TagSCMHead) {
+            return RefType.TAG;
+        }
+        return RefType.BRANCH;
+    }
+
+    /**
+     * @return the strictest filter covering the type for each age source, pull requests only differing by age source
+     */
+    @NonNull
+    List<AgedRefsSCMHeadFilter> strictest(@NonNull RefType type) {
+        List<AgedRefsSCMHeadFilter> selected = new ArrayList<>(1);
+        for (Member member : members) {
+            if (!member.types.contains(type)) {
+                continue;
+            }
+            AgedRefsSCMHeadFilter filter = member.filter;
+            PullRequestAgeSource ageSource = type == RefType.PULL_REQUEST ? filter.getPullRequestAgeSource() : null;
+            int same = -1;
+            for (int i = 0; i < selected.size(); i++) {
+                if (type != RefType.PULL_REQUEST
+                        || Objects.equals(selected.get(i).getPullRequestAgeSource(), ageSource)) {
+                    same = i;
+                    break;
+                }
+            }
+            if (same < 0) {
+                selected.add(filter);
+            } else if (filter.getAcceptableDateTimeThreshold()
+                    > selected.get(same).getAcceptableDateTimeThreshold()) {
+                selected.set(same, filter);
+            }
+        }
+        return selected;
+    }
+
+    @CheckForNull
+    private AgedRefsSCMHeadFilter strictestOf(@NonNull RefType type) {
+        AgedRefsSCMHeadFilter strictest = null;
+        for (AgedRefsSCMHeadFilter filter : strictest(type)) {
+            if (strictest == null
+                    || filter.getAcceptableDateTimeThreshold() > strictest.getAcceptableDateTimeThreshold()) {
+                strictest = filter;
+            }
+        }
+        return strictest;
+    }
+
+    private static final class Member {
+
+        private final AgedRefsSCMHeadFilter filter;
+
+        private final Set<RefType> types;
+
+        Member(AgedRefsSCMHeadFilter filter, Set<RefType> types) {
+            this.filter = filter;
+            this.types = types;
+        }
+    }
+
+    private class CoordinatedFilter extends SCMHeadFilter {
+
+        @Override
+        public boolean isExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head)
+                throws IOException, InterruptedException {
+            for (AgedRefsSCMHeadFilter filter : strictest(typeOf(head))) {
+                if (filter.isExcluded(request, head)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private class CoordinatedPrefilter extends SCMHeadPrefilter {
+
+        @Override
+        public boolean isExcluded(@NonNull SCMSource source, @NonNull SCMHead head) {
+            AgedRefsFilterCoordinator.this.source = source;
+            RefType type = typeOf(head);
+            AgedRefsSCMHeadFilter strictest = strictestOf(type);
+            if (strictest == null) {
+                return false;
+            }
+            switch (type) {
+                case TAG:
+                    return new AgedTagsSCMHeadPrefilter(strictest.getAcceptableDateTimeThreshold())
+                            .isExcluded(source, head);
+                case BRANCH:
+                    return strictest.getStaleBranchPrefilter().isExcluded(source, head);
+                default:
+                    return false;
+            }
+        }
+    }
+}
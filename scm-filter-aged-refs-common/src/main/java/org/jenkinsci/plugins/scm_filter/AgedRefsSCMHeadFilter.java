@@ -0,0 +1,248 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.scm.api.mixin.TagSCMHead;
+import jenkins.scm.api.trait.SCMHeadFilter;
+import jenkins.scm.api.trait.SCMHeadPrefilter;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.utils.EvaluationBudget;
+import org.jenkinsci.plugins.scm_filter.utils.HeadDecisions;
+import org.jenkinsci.plugins.scm_filter.utils.RefTimestampIndex;
+
+/**
+ * Common base of the aged refs filters, holding the settings shared by all of them.
+ */
+public abstract class AgedRefsSCMHeadFilter extends SCMHeadFilter {
+
+    private final long acceptableDateTimeThreshold;
+
+    @CheckForNull
+    private final PullRequestAgeSource pullRequestAgeSource;
+
+    private final SCMHeadPrefilter staleBranchPrefilter = new StaleBranchPrefilter();
+
+    @CheckForNull
+    private AgedRefsFilterCoordinator coordinator;
+
+    private volatile WeakReference<SCMSourceRequest> request = new WeakReference<>(null);
+
+    private volatile EvaluationBudget budget = EvaluationBudget.UNLIMITED;
+
+    private volatile boolean excludeNotUpdated;
+
+    private volatile EvaluationBudget.Scan scan = budget.start();
+
+    protected AgedRefsSCMHeadFilter(int retentionDays, @CheckForNull PullRequestAgeSource pullRequestAgeSource) {
+        long now = System.currentTimeMillis();
+        this.acceptableDateTimeThreshold = now - (24L * 60 * 60 * 1000 * retentionDays);
+        this.pullRequestAgeSource = pullRequestAgeSource;
+    }
+
+    public long getAcceptableDateTimeThreshold() {
+        return acceptableDateTimeThreshold;
+    }
+
+    /**
+     * @return where the age of pull requests is taken from, {@code null} for the default of the SCM provider
+     */
+    @CheckForNull
+    public PullRequestAgeSource getPullRequestAgeSource() {
+        return pullRequestAgeSource;
+    }
+
+    /**
+     * @return whether pull requests not updated since the threshold are excluded without looking up their commits,
+     *     pushing to a pull request updates it, so its commits are at least as old as its last update
+     */
+    public boolean isExcludeNotUpdated() {
+        return excludeNotUpdated;
+    }
+
+    void setExcludeNotUpdated(boolean excludeNotUpdated) {
+        this.excludeNotUpdated = excludeNotUpdated;
+    }
+
+    /**
+     * Sets the time allowed to evaluate heads, unlimited by default.
+     *
+     * @param budget the budget, its scan clock starting with each request
+     */
+    void setBudget(@NonNull EvaluationBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Binds this filter to the coordinator of the context it was registered with.
+     *
+     * @param coordinator the coordinator
+     */
+    void setCoordinator(@NonNull AgedRefsFilterCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Gets the prefilter excluding the branches already known to be stale.
+     * <p>
+     * A branch is known to be stale when the listing of the current request gives it a head that was already found
+     * older than the threshold, either by the listing itself or by a {@link HeadDecisions decision} of an earlier scan.
+     * Such branches are then excluded with a couple of hash lookups, before the request pipeline processes them. The
+     * current request is only known once this filter evaluated a first head of it, heads the prefilter cannot decide
+     * are left to the filter.
+     *
+     * @return a prefilter that only excludes branches with a known stale head
+     */
+    @NonNull
+    public SCMHeadPrefilter getStaleBranchPrefilter() {
+        return staleBranchPrefilter;
+    }
+
+    @Override
+    public final boolean isExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head)
+            throws IOException, InterruptedException {
+        boolean first = this.request.get() != request;
+        if (first) {
+            // the request lives as long as the context this filter was created for, do not extend it
+            this.request = new WeakReference<>(request);
+            scan = budget.start();
+        }
+        EvaluationBudget.Evaluation evaluation = () -> {
+            if (first) {
+                prefetch(request);
+            }
+            return isHeadExcluded(request, head);
+        };
+        if (budget.isUnlimited()) {
+            return evaluation.isExcluded();
+        }
+        return scan.evaluate(
+                request.listener(), head.getName(), evaluation, () -> isHeadExcludedCheaply(request, head));
+    }
+
+    /**
+     * Starts resolving the timestamps of the heads listed by a request, before the first of them is evaluated.
+     * <p>
+     * Filters resolving timestamps through one API call per head override this to fan the calls out on the
+     * {@link org.jenkinsci.plugins.scm_filter.utils.PrefetchExecutor}, so that later evaluations find them resolved
+     * or in flight. Does nothing by default.
+     *
+     * @param request the request, evaluated by this filter for the first time
+     * @throws IOException if the heads could not be listed
+     * @throws InterruptedException if interrupted
+     */
+    protected void prefetch(@NonNull SCMSourceRequest request) throws IOException, InterruptedException {}
+
+    /**
+     * Checks if a head is excluded.
+     *
+     * @param request the request
+     * @param head the head
+     * @return {@code true} if the head is excluded
+     * @throws IOException if there is an I/O error
+     * @throws InterruptedException if interrupted
+     * @see SCMHeadFilter#isExcluded(SCMSourceRequest, SCMHead)
+     */
+    protected abstract boolean isHeadExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head)
+            throws IOException, InterruptedException;
+
+    /**
+     * Decides a head without calling the SCM, when it could not be {@link #isHeadExcluded evaluated} in time.
+     * <p>
+     * Tags are decided from their timestamp, branches from the date provided by the listing or from a
+     * {@link HeadDecisions decision} of an earlier scan for their current head, pull requests from such a decision
+     * only. Heads that moved since their last decision are left to the default of the budget.
+     *
+     * @param request the request
+     * @param head the head
+     * @return whether the head is excluded or {@code null} if its age is not known without calling the SCM
+     */
+    @CheckForNull
+    protected Boolean isHeadExcludedCheaply(@NonNull SCMSourceRequest request, @NonNull SCMHead head) {
+        long threshold = getAcceptableDateTimeThreshold();
+        if (head instanceof TagSCMHead) {
+            return ((TagSCMHead) head).getTimestamp() < threshold;
+        }
+        SCMSource source = getSource();
+        if (head instanceof ChangeRequestSCMHead) {
+            return getKnownChangeRequestDecision(request, source, head);
+        }
+        return getKnownBranchDecision(request, source, head);
+    }
+
+    /**
+     * @return whether a change request is excluded according to a decision for its current head, {@code null} if
+     *     there is none or its current head is not known
+     */
+    @CheckForNull
+    private Boolean getKnownChangeRequestDecision(
+            @NonNull SCMSourceRequest request, @CheckForNull SCMSource source, @NonNull SCMHead head) {
+        RefTimestampIndex.Ref ref;
+        try {
+            ref = RefTimestampIndex.of(request).peekPullRequest(Long.parseLong(((ChangeRequestSCMHead) head).getId()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (ref == null) {
+            return null;
+        }
+        HeadDecisions decisions = HeadDecisions.of(source);
+        String key = HeadDecisions.keyOf(head);
+        for (PullRequestAgeSource ageSource : PullRequestAgeSource.values()) {
+            if (pullRequestAgeSource == null || pullRequestAgeSource == ageSource) {
+                Boolean decided = decisions.isExcluded(key, ref.getHash(), ageSource, getAcceptableDateTimeThreshold());
+                if (decided != null) {
+                    return decided;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether a branch is excluded according to the date provided by the listing or a decision for its
+     *     current head, {@code null} if neither is known
+     */
+    @CheckForNull
+    private Boolean getKnownBranchDecision(
+            @NonNull SCMSourceRequest request, @CheckForNull SCMSource source, @NonNull SCMHead head) {
+        RefTimestampIndex.Ref branch = RefTimestampIndex.of(request).peekBranch(head.getName());
+        if (branch == null) {
+            return null;
+        }
+        long threshold = getAcceptableDateTimeThreshold();
+        long timestamp = branch.getTimestamp();
+        if (timestamp != RefTimestampIndex.UNKNOWN) {
+            return timestamp < threshold;
+        }
+        return HeadDecisions.of(source)
+                .isExcluded(head.getName(), branch.getHash(), PullRequestAgeSource.HEAD_COMMIT, threshold);
+    }
+
+    /**
+     * @return the source of the context this filter was registered with, {@code null} if this filter is not
+     *     {@link AgedRefsFilterCoordinator#register registered} or no request of the context was processed yet
+     */
+    @CheckForNull
+    protected SCMSource getSource() {
+        AgedRefsFilterCoordinator coordinator = this.coordinator;
+        return coordinator == null ? null : coordinator.getSource();
+    }
+
+    private class StaleBranchPrefilter extends SCMHeadPrefilter {
+
+        @Override
+        public boolean isExcluded(@NonNull SCMSource source, @NonNull SCMHead head) {
+            SCMSourceRequest current = request.get();
+            if (current == null || head instanceof ChangeRequestSCMHead || head instanceof TagSCMHead) {
+                return false;
+            }
+            return Boolean.TRUE.equals(getKnownBranchDecision(current, source, head));
+        }
+    }
+}
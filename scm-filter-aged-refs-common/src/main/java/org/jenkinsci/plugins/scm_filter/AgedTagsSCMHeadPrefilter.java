@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.mixin.TagSCMHead;
+import jenkins.scm.api.trait.SCMHeadPrefilter;
+
+/**
+ * Prefilter that excludes tags older than the threshold.
+ * <p>
+ * The date of a tag is carried by its head, so tags need no lookup in the request: excluding them before the request
+ * pipeline saves the criteria, observers and revision lookups that would otherwise run for every aged tag.
+ */
+public class AgedTagsSCMHeadPrefilter extends SCMHeadPrefilter {
+
+    private final long acceptableDateTimeThreshold;
+
+    /**
+     * @param acceptableDateTimeThreshold the oldest acceptable tag date in epoch milliseconds, usually the threshold
+     *     of the strictest aged tags filter of the context
+     */
+    public AgedTagsSCMHeadPrefilter(long acceptableDateTimeThreshold) {
+        this.acceptableDateTimeThreshold = acceptableDateTimeThreshold;
+    }
+
+    @Override
+    public boolean isExcluded(@NonNull SCMSource source, @NonNull SCMHead head) {
+        // tags without a known date report 0 and have always been excluded by the aged tag filters
+        return head instanceof TagSCMHead && ((TagSCMHead) head).getTimestamp() < acceptableDateTimeThreshold;
+    }
+}
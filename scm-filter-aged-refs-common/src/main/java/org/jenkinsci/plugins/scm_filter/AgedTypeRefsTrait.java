@@ -1,23 +1,33 @@
 package org.jenkinsci.plugins.scm_filter;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.util.FormValidation;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import jenkins.scm.api.SCMHead;
-import jenkins.scm.api.trait.SCMHeadFilter;
 import jenkins.scm.api.trait.SCMSourceContext;
 import jenkins.scm.api.trait.SCMSourceRequest;
 import jenkins.scm.api.trait.SCMSourceTrait;
 import jenkins.scm.api.trait.SCMSourceTraitDescriptor;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.utils.EvaluationBudget;
 import org.jenkinsci.plugins.scm_filter.utils.FormValidationUtils;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.verb.POST;
 
 public abstract class AgedTypeRefsTrait extends SCMSourceTrait {
     final int retentionDays;
 
+    int headTimeoutSeconds;
+
+    int scanTimeoutSeconds;
+
+    boolean excludeOnTimeout;
+
     /**
      * Constructor for stapler.
      *
@@ -32,6 +42,65 @@ public abstract class AgedTypeRefsTrait extends SCMSourceTrait {
         return this.retentionDays;
     }
 
+    @SuppressWarnings("unused") // used by Jelly EL
+    public int getHeadTimeoutSeconds() {
+        return headTimeoutSeconds;
+    }
+
+    /**
+     * Setter for stapler.
+     *
+     * @param headTimeoutSeconds time allowed to evaluate one head, {@code 0} for no limit
+     */
+    @DataBoundSetter
+    public void setHeadTimeoutSeconds(int headTimeoutSeconds) {
+        this.headTimeoutSeconds = Math.max(0, headTimeoutSeconds);
+    }
+
+    @SuppressWarnings("unused") // used by Jelly EL
+    public int getScanTimeoutSeconds() {
+        return scanTimeoutSeconds;
+    }
+
+    /**
+     * Setter for stapler.
+     *
+     * @param scanTimeoutSeconds time allowed to evaluate all heads of a scan, {@code 0} for no limit
+     */
+    @DataBoundSetter
+    public void setScanTimeoutSeconds(int scanTimeoutSeconds) {
+        this.scanTimeoutSeconds = Math.max(0, scanTimeoutSeconds);
+    }
+
+    @SuppressWarnings("unused") // used by Jelly EL
+    public boolean isExcludeOnTimeout() {
+        return excludeOnTimeout;
+    }
+
+    /**
+     * Setter for stapler.
+     *
+     * @param excludeOnTimeout whether heads not evaluated in time and without a cached age are excluded
+     */
+    @DataBoundSetter
+    public void setExcludeOnTimeout(boolean excludeOnTimeout) {
+        this.excludeOnTimeout = excludeOnTimeout;
+    }
+
+    /**
+     * Applies the evaluation budget of this trait to a filter.
+     *
+     * @param filter the filter
+     * @return the filter
+     */
+    <F extends AgedRefsSCMHeadFilter> F withBudget(F filter) {
+        filter.setBudget(new EvaluationBudget(
+                TimeUnit.SECONDS.toMillis(headTimeoutSeconds),
+                TimeUnit.SECONDS.toMillis(scanTimeoutSeconds),
+                excludeOnTimeout));
+        return filter;
+    }
+
     @Override
     protected abstract void decorateContext(SCMSourceContext<?, ?> context);
 
@@ -48,26 +117,36 @@ public abstract class AgedTypeRefsTrait extends SCMSourceTrait {
         public FormValidation doCheckRetentionDays(@QueryParameter String value) {
             return FormValidationUtils.checkRetentionDays(value);
         }
+
+        @Restricted(NoExternalUse.class)
+        @POST
+        public FormValidation doCheckHeadTimeoutSeconds(@QueryParameter String value) {
+            return FormValidationUtils.checkTimeoutSeconds(value);
+        }
+
+        @Restricted(NoExternalUse.class)
+        @POST
+        public FormValidation doCheckScanTimeoutSeconds(@QueryParameter String value) {
+            return FormValidationUtils.checkTimeoutSeconds(value);
+        }
     }
 
     /**
      * Filter that excludes references (branches, pull requests, tags) according to their last commit modification date and the defined retentionDays.
      */
-    public abstract static class ExcludeReferencesSCMHeadFilter extends SCMHeadFilter {
-
-        private final long acceptableDateTimeThreshold;
+    public abstract static class ExcludeReferencesSCMHeadFilter extends AgedRefsSCMHeadFilter {
 
         protected ExcludeReferencesSCMHeadFilter(int retentionDays) {
-            long now = System.currentTimeMillis();
-            acceptableDateTimeThreshold = now - (24L * 60 * 60 * 1000 * retentionDays);
+            this(retentionDays, null);
         }
 
-        public long getAcceptableDateTimeThreshold() {
-            return acceptableDateTimeThreshold;
+        protected ExcludeReferencesSCMHeadFilter(
+                int retentionDays, @CheckForNull PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
         }
 
         @Override
-        public abstract boolean isExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
+        protected abstract boolean isHeadExcluded(@NonNull SCMSourceRequest scmSourceRequest, @NonNull SCMHead scmHead)
                 throws IOException, InterruptedException;
     }
 }
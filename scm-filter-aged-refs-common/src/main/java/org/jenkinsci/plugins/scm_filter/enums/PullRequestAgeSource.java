@@ -0,0 +1,29 @@
+package org.jenkinsci.plugins.scm_filter.enums;
+
+/**
+ * Where the age of a pull request (or merge request) is taken from, ordered from the cheapest to the most expensive.
+ */
+public enum PullRequestAgeSource {
+    /**
+     * Last update of the pull request, as provided by the listing. Costs no additional API call.
+     */
+    UPDATED_AT("Last update of the pull request"),
+    /**
+     * Commit date of the pull request head. Costs one API call per distinct head SHA.
+     */
+    HEAD_COMMIT("Date of the head commit"),
+    /**
+     * Newest commit date of the whole pull request history. Costs one or more API calls per pull request.
+     */
+    COMMIT_HISTORY("Newest commit of the pull request");
+
+    private final String name;
+
+    PullRequestAgeSource(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.PluginWrapper;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Attaches the {@link CommitDateStore} to the {@link CommitDateCache} and the persisted {@link HeadDecisions} at
+ * startup, then periodically writes the buffered entries, compacts the store and saves the modified decisions. The
+ * statistics of the ref age resolvers are logged at each run, at the fine level.
+ * <p>
+ * Every provider plugin bundles its own copy of this module, with its own caches. Jenkins finds extensions and
+ * initializers by class name through the class loader of all plugins, which resolves a class of this module to the copy
+ * of a single plugin. So this class is not registered itself: each provider plugin registers a subclass of its own,
+ * whose initializer and terminator {@link #openStore open} and {@link #closeStore close} the caches of its copy in a
+ * store directory of its own.
+ */
+public abstract class AgedRefsMaintenance extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(AgedRefsMaintenance.class.getName());
+
+    /**
+     * @param provider the name of the provider, distinguishing the maintenance of each plugin
+     */
+    protected AgedRefsMaintenance(@NonNull String provider) {
+        super("Aged refs filter maintenance (" + provider + ")");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(5);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException {
+        LOGGER.log(Level.FINE, "Ref age resolvers: {0}", RefAgeResolver.chain());
+        HeadDecisions.saveAll();
+        CommitDateStore store = CommitDateCache.get().getStore();
+        if (store == null) {
+            return;
+        }
+        store.flush();
+        if (store.needsCompaction()) {
+            store.compact();
+        }
+    }
+
+    /**
+     * Attaches the store of the plugin to its caches, to be called once its plugins are started.
+     *
+     * @param type the maintenance subclass of the plugin, identifying it
+     */
+    protected static void openStore(@NonNull Class<? extends AgedRefsMaintenance> type) {
+        Jenkins jenkins = Jenkins.get();
+        PluginWrapper plugin = jenkins.getPluginManager().whichPlugin(type);
+        Path dir = jenkins.getRootDir()
+                .toPath()
+                .resolve("scm-filter-aged-refs")
+                .resolve(plugin == null ? "default" : plugin.getShortName());
+        HeadDecisions.setDirectory(dir.resolve("decisions"));
+        try {
+            CommitDateCache.get().setStore(CommitDateStore.open(dir));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not open the commit date store in " + dir + ", starting cold", e);
+        }
+    }
+
+    /**
+     * Stops the background work of the plugin and writes its caches to its store, to be called at shutdown.
+     */
+    protected static void closeStore() {
+        PrefetchExecutor prefetch = PrefetchExecutor.get();
+        if (prefetch != null) {
+            prefetch.shutdown();
+        }
+        EvaluationBudget.shutdown();
+        HeadDecisions.saveAll();
+        CommitDateStore store = CommitDateCache.get().getStore();
+        if (store == null) {
+            return;
+        }
+        CommitDateCache.get().setStore(null);
+        try {
+            store.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close the commit date store", e);
+        }
+    }
+}
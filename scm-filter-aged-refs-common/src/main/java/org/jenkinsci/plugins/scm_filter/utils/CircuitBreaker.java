@@ -0,0 +1,107 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops calling an endpoint that keeps failing, so that scans do not hammer a degraded server.
+ * <p>
+ * The breaker opens after {@value #FAILURE_THRESHOLD} consecutive transient failures; calls then fail fast for
+ * {@link #OPEN_MILLIS} milliseconds, after which a single trial call is let through. Its success closes the breaker,
+ * its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    static final int FAILURE_THRESHOLD = 5;
+
+    static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private final String endpoint;
+
+    private int failures;
+
+    private boolean open;
+
+    private long openedAt;
+
+    private boolean trialInFlight;
+
+    CircuitBreaker(@NonNull String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @param endpoint identifies the server and the endpoint called
+     * @return the breaker shared by all calls to the endpoint
+     */
+    @NonNull
+    public static CircuitBreaker of(@NonNull String endpoint) {
+        return BREAKERS.computeIfAbsent(endpoint, CircuitBreaker::new);
+    }
+
+    /**
+     * @param now the current time in epoch milliseconds
+     * @return whether a call may be made
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (!open) {
+            return true;
+        }
+        if (trialInFlight || now - openedAt < OPEN_MILLIS) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    /**
+     * Records a call answered by the server, whatever its answer.
+     */
+    synchronized void onSuccess() {
+        failures = 0;
+        trialInFlight = false;
+        if (open) {
+            open = false;
+            LOGGER.log(Level.INFO, "{0} answers again, resuming aged refs lookups", endpoint);
+        }
+    }
+
+    /**
+     * Records a transient failure of a call.
+     *
+     * @param now the current time in epoch milliseconds
+     */
+    synchronized void onFailure(long now) {
+        failures++;
+        if (trialInFlight || !open && failures >= FAILURE_THRESHOLD) {
+            trialInFlight = false;
+            if (!open) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "{0} failed {1} times in a row, aged refs lookups fail fast for {2} s",
+                        new Object[] {endpoint, failures, TimeUnit.MILLISECONDS.toSeconds(OPEN_MILLIS)});
+            }
+            open = true;
+            openedAt = now;
+        }
+    }
+
+    /**
+     * Records a call abandoned before the server answered, which neither closes nor opens the breaker.
+     */
+    synchronized void onAbandoned() {
+        trialInFlight = false;
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,15 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import java.io.IOException;
+
+/**
+ * A call not made because the {@link CircuitBreaker} of its endpoint is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String endpoint) {
+        super("Not calling " + endpoint + ", it failed repeatedly");
+    }
+}
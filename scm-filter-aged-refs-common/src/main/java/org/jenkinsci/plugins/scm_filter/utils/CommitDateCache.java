@@ -0,0 +1,284 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.locks.StampedLock;
+import jenkins.util.SystemProperties;
+
+/**
+ * Cache of commit dates by SHA, shared by all sources and scans of the plugin.
+ * <p>
+ * This module is bundled into each provider plugin and loaded by the class loader of each, so every installed provider
+ * plugin has its own cache, and its own {@link CommitDateStore}: dates resolved by the scans of one provider are not
+ * seen by the others.
+ * <p>
+ * Commit dates never change for a given SHA, so entries never need to be invalidated, only evicted to bound the
+ * memory use. Entries are kept in primitive arrays rather than boxed maps: the 20 bytes of a SHA-1 and the commit date
+ * in seconds take three {@code long}s, 24 bytes per entry, without any per entry object. The table is split into
+ * independently locked stripes of {@value #WAYS} way sets; a full set evicts one of its entries in round robin.
+ * <p>
+ * The capacity defaults to {@value #DEFAULT_CAPACITY} entries and can be changed with the
+ * {@code org.jenkinsci.plugins.scm_filter.utils.CommitDateCache.capacity} system property.
+ * <p>
+ * When a {@link CommitDateStore} is attached, misses are looked up there and new entries are written through to it,
+ * so that the cache survives restarts.
+ */
+public final class CommitDateCache {
+
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    static final int WAYS = 8;
+
+    private static final int STRIPES = 64;
+
+    private static final int SHA1_HEX_LENGTH = 40;
+
+    private static final CommitDateCache INSTANCE = new CommitDateCache(
+            SystemProperties.getInteger(CommitDateCache.class.getName() + ".capacity", DEFAULT_CAPACITY));
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final int setsPerStripe;
+
+    @CheckForNull
+    private volatile CommitDateStore store;
+
+    CommitDateCache(int capacity) {
+        int sets = Math.max(1, capacity / (STRIPES * WAYS));
+        // power of two, so that the set is selected by masking bits of the SHA
+        this.setsPerStripe = Integer.highestOneBit(sets);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return the cache shared by the scans of the plugin
+     */
+    @NonNull
+    public static CommitDateCache get() {
+        return INSTANCE;
+    }
+
+    @CheckForNull
+    CommitDateStore getStore() {
+        return store;
+    }
+
+    void setStore(@CheckForNull CommitDateStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the maximum number of entries
+     */
+    int getCapacity() {
+        return STRIPES * setsPerStripe * WAYS;
+    }
+
+    /**
+     * Looks up the commit date of a SHA.
+     *
+     * @param sha the commit SHA
+     * @return the commit date in epoch milliseconds, truncated to seconds, or {@link RefTimestampIndex#UNKNOWN} if
+     *     the SHA is not cached
+     */
+    public long getCommitDate(@CheckForNull String sha) {
+        long date = getCachedCommitDate(sha);
+        return date != RefTimestampIndex.UNKNOWN ? date : getStoredCommitDate(sha);
+    }
+
+    /**
+     * Looks up the commit date of a SHA in memory only.
+     *
+     * @param sha the commit SHA
+     * @return the commit date in epoch milliseconds, truncated to seconds, or {@link RefTimestampIndex#UNKNOWN} if
+     *     the SHA is not cached in memory
+     */
+    long getCachedCommitDate(@CheckForNull String sha) {
+        long[] key = parse(sha);
+        return key == null ? RefTimestampIndex.UNKNOWN : stripe(key).get(key, set(key));
+    }
+
+    /**
+     * Looks up the commit date of a SHA in the store, caching it in memory when found.
+     *
+     * @param sha the commit SHA
+     * @return the commit date in epoch milliseconds, truncated to seconds, or {@link RefTimestampIndex#UNKNOWN} if
+     *     no store is attached or the SHA is not stored
+     */
+    long getStoredCommitDate(@CheckForNull String sha) {
+        long[] key = parse(sha);
+        CommitDateStore persistent = store;
+        if (key == null || persistent == null) {
+            return RefTimestampIndex.UNKNOWN;
+        }
+        long date = persistent.getCommitDate(key);
+        if (date != RefTimestampIndex.UNKNOWN) {
+            stripe(key).put(key, set(key), date / 1000);
+            date = date / 1000 * 1000;
+        }
+        return date;
+    }
+
+    /**
+     * Caches the commit date of a SHA, writing it through to the store if it was not cached yet. SHAs other than SHA-1
+     * and dates before the epoch are ignored.
+     *
+     * @param sha the commit SHA
+     * @param date the commit date in epoch milliseconds
+     */
+    public void putCommitDate(@CheckForNull String sha, long date) {
+        long[] key = parse(sha);
+        if (key == null || date < 0 || date == RefTimestampIndex.UNKNOWN) {
+            return;
+        }
+        CommitDateStore persistent = store;
+        if (stripe(key).put(key, set(key), date / 1000) && persistent != null) {
+            persistent.append(key, date);
+        }
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripe(long[] key) {
+        // SHA bits are uniformly distributed, they need no further hashing
+        return stripes[(int) (key[0] >>> 58)];
+    }
+
+    private int set(long[] key) {
+        return (int) key[1] & (setsPerStripe - 1);
+    }
+
+    /**
+     * Packs a hexadecimal SHA-1 into three longs: the first 16 bytes, then the last 4 bytes in the upper half of the
+     * third long, whose lower half is left for the date.
+     */
+    @CheckForNull
+    static long[] parse(@CheckForNull String sha) {
+        if (sha == null || sha.length() != SHA1_HEX_LENGTH) {
+            return null;
+        }
+        long[] key = new long[3];
+        for (int i = 0; i < SHA1_HEX_LENGTH; i++) {
+            int digit = Character.digit(sha.charAt(i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            key[i / 16] = (key[i / 16] << 4) | digit;
+        }
+        key[2] <<= 32;
+        return key;
+    }
+
+    private final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+
+        /**
+         * {@value #WAYS} entries per set, three longs per entry; allocated on first use.
+         */
+        @CheckForNull
+        private long[] table;
+
+        private int victim;
+
+        long get(long[] key, int set) {
+            long stamp = lock.tryOptimisticRead();
+            long result = find(table, key, set);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    result = find(table, key, set);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        private long find(@CheckForNull long[] t, long[] key, int set) {
+            if (t == null) {
+                return RefTimestampIndex.UNKNOWN;
+            }
+            int base = set * WAYS * 3;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = base + way * 3;
+                long tail = t[slot + 2];
+                if (tail != 0 && t[slot] == key[0] && t[slot + 1] == key[1] && (tail & ~0xFFFFFFFFL) == key[2]) {
+                    // dates are stored shifted by one second so that an occupied slot is never zero
+                    return ((tail & 0xFFFFFFFFL) - 1) * 1000;
+                }
+            }
+            return RefTimestampIndex.UNKNOWN;
+        }
+
+        /**
+         * @return whether the entry was added rather than updated
+         */
+        boolean put(long[] key, int set, long seconds) {
+            if (seconds >= 0xFFFFFFFFL) {
+                return false;
+            }
+            long tail = key[2] | (seconds + 1);
+            long stamp = lock.writeLock();
+            try {
+                if (table == null) {
+                    table = new long[setsPerStripe * WAYS * 3];
+                }
+                int base = set * WAYS * 3;
+                int free = -1;
+                for (int way = 0; way < WAYS; way++) {
+                    int slot = base + way * 3;
+                    long current = table[slot + 2];
+                    if (current == 0) {
+                        if (free < 0) {
+                            free = slot;
+                        }
+                    } else if (table[slot] == key[0]
+                            && table[slot + 1] == key[1]
+                            && (current & ~0xFFFFFFFFL) == key[2]) {
+                        table[slot + 2] = tail;
+                        return false;
+                    }
+                }
+                if (free < 0) {
+                    free = base + (victim++ & (WAYS - 1)) * 3;
+                }
+                table[free] = key[0];
+                table[free + 1] = key[1];
+                table[free + 2] = tail;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                if (table == null) {
+                    return 0;
+                }
+                int size = 0;
+                for (int slot = 2; slot < table.length; slot += 3) {
+                    if (table[slot] != 0) {
+                        size++;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMEventListener;
+import jenkins.scm.api.SCMHeadEvent;
+
+/**
+ * Records the commit dates carried by the payloads of head events as {@link CommitDateHints}, so that the scans the
+ * events trigger keep a freshly pushed head without calling the SCM API.
+ * <p>
+ * Listeners are notified in turn, by decreasing ordinal, and the one turning events into scans has the default
+ * ordinal: provider implementations register with a higher ordinal so that the dates are recorded first. Payloads are
+ * not verified, so their dates are never cached: they are scoped to the repository the event names and can only keep
+ * a head, never exclude one.
+ */
+public abstract class CommitDateEventListener extends SCMEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(CommitDateEventListener.class.getName());
+
+    /**
+     * Ordinal of provider implementations, ahead of the listener turning events into scans.
+     */
+    public static final double ORDINAL = 1000;
+
+    @Override
+    public void onSCMHeadEvent(SCMHeadEvent<?> event) {
+        if (event.getType() == SCMEvent.Type.REMOVED) {
+            return;
+        }
+        try {
+            recordCommitDates(event.getPayload(), CommitDateHints.get());
+        } catch (RuntimeException e) {
+            // the event is processed anyway, its heads get resolved through the API
+            LOGGER.log(Level.FINE, "Could not record the commit dates of " + event.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Records the commit dates of a payload.
+     *
+     * @param payload the event payload, of any type the branch source fires
+     * @param hints the hints to record the dates to
+     */
+    protected abstract void recordCommitDates(@NonNull Object payload, @NonNull CommitDateHints hints);
+}
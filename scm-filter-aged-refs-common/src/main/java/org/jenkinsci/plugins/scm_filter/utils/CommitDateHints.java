@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commit dates reported by webhook events, kept for the scans the events trigger.
+ * <p>
+ * Event payloads are not verified, anyone able to reach the webhook endpoint can make them up, so unlike the
+ * {@link CommitDateCache} these dates are only hints: they are kept in memory for {@value #TTL_MINUTES} minutes, never
+ * persisted, scoped to the repository the event names and only ever used to keep a head whose hinted date is recent,
+ * never to exclude one. At most {@value #CAPACITY} hints are kept, the oldest ones being dropped first.
+ */
+public final class CommitDateHints {
+
+    static final int TTL_MINUTES = 10;
+
+    static final int CAPACITY = 10_000;
+
+    private static final CommitDateHints INSTANCE = new CommitDateHints();
+
+    private final Map<String, Hint> hints = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Hint> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    CommitDateHints() {}
+
+    /**
+     * @return the hints of the plugin
+     */
+    @NonNull
+    public static CommitDateHints get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the commit date an event reported.
+     *
+     * @param repository the repository the event names, in a form of the provider's choosing
+     * @param sha the commit SHA
+     * @param date the commit date in epoch milliseconds
+     */
+    public void put(@NonNull String repository, @NonNull String sha, long date) {
+        put(repository, sha, date, System.currentTimeMillis());
+    }
+
+    void put(@NonNull String repository, @NonNull String sha, long date, long now) {
+        String key = key(repository, sha);
+        synchronized (hints) {
+            // re-inserted, so that the hint is evicted last
+            hints.remove(key);
+            hints.put(key, new Hint(date, now + TimeUnit.MINUTES.toMillis(TTL_MINUTES)));
+        }
+    }
+
+    /**
+     * Tells whether an event recently reported a commit of a repository as not older than a threshold.
+     *
+     * @param repository the repository the commit is looked up in, in the form the provider records hints with
+     * @param sha the commit SHA, if known
+     * @param threshold the acceptable date time threshold
+     * @return {@code true} if the head can be kept, {@code false} if its date has to be resolved
+     */
+    public boolean isRecent(@CheckForNull String repository, @CheckForNull String sha, long threshold) {
+        return isRecent(repository, sha, threshold, System.currentTimeMillis());
+    }
+
+    boolean isRecent(@CheckForNull String repository, @CheckForNull String sha, long threshold, long now) {
+        if (repository == null || sha == null) {
+            return false;
+        }
+        Hint hint;
+        synchronized (hints) {
+            hint = hints.get(key(repository, sha));
+        }
+        return hint != null && now < hint.expiresAt && hint.date >= threshold;
+    }
+
+    /**
+     * @return the number of hints kept, expired ones included
+     */
+    int size() {
+        synchronized (hints) {
+            return hints.size();
+        }
+    }
+
+    private static String key(String repository, String sha) {
+        // git ref names cannot contain spaces, nor can repository paths
+        return repository.toLowerCase(Locale.ROOT) + ' ' + sha.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Hint {
+
+        private final long date;
+
+        private final long expiresAt;
+
+        Hint(long date, long expiresAt) {
+            this.date = date;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts a single date from a commit JSON document without building the document in memory.
+ * <p>
+ * The document is scanned up to the requested member only: members off the path are skipped character by character
+ * and the rest of the document is never read, so large commit payloads cost neither heap nor parse time. Commit
+ * listings are read the same way, keeping only the SHA and the date of each commit.
+ */
+public final class CommitDateJsonReader {
+
+    private final Reader in;
+
+    private int peeked = -1;
+
+    private CommitDateJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the date at a member path, e.g. {@code committer, date} for a git commit of GitHub or
+     * {@code committed_date} for a commit of GitLab.
+     *
+     * @param stream the JSON document, left open
+     * @param path the member names leading from the root object to the date
+     * @return the date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if the document has no date there
+     * @throws IOException if the document could not be read or the date could not be parsed
+     */
+    public static long readDate(@NonNull InputStream stream, @NonNull String... path) throws IOException {
+        CommitDateJsonReader reader = new CommitDateJsonReader(
+                new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        if (reader.next() != '{') {
+            return RefTimestampIndex.UNKNOWN;
+        }
+        return reader.find(path, 0);
+    }
+
+    /**
+     * Reads the dates of a commit listing, e.g. {@code id, committed_date} for the commits of GitLab.
+     *
+     * @param stream the JSON array of commits, left open
+     * @param idMember the name of the member holding the SHA of a commit
+     * @param dateMember the name of the member holding the date of a commit
+     * @return the dates in epoch milliseconds by SHA, in listing order, leaving out the commits without either member
+     * @throws IOException if the document could not be read, is not an array or a date could not be parsed
+     */
+    @NonNull
+    public static Map<String, Long> readDates(
+            @NonNull InputStream stream, @NonNull String idMember, @NonNull String dateMember) throws IOException {
+        CommitDateJsonReader reader = new CommitDateJsonReader(
+                new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        Map<String, Long> dates = new LinkedHashMap<>();
+        if (reader.next() != '[') {
+            throw reader.syntaxError("'['");
+        }
+        int c = reader.next();
+        if (c == ']') {
+            return dates;
+        }
+        while (true) {
+            if (c != '{') {
+                throw reader.syntaxError("'{'");
+            }
+            reader.readCommit(idMember, dateMember, dates);
+            c = reader.next();
+            if (c == ']') {
+                return dates;
+            }
+            if (c != ',') {
+                throw reader.syntaxError("',' or ']'");
+            }
+            c = reader.next();
+        }
+    }
+
+    /**
+     * Searches the object whose opening brace has just been consumed.
+     */
+    private long find(String[] path, int depth) throws IOException {
+        int c = next();
+        if (c == '}') {
+            return RefTimestampIndex.UNKNOWN;
+        }
+        while (true) {
+            if (c != '"') {
+                throw syntaxError("member name");
+            }
+            String name = readString();
+            if (next() != ':') {
+                throw syntaxError("':'");
+            }
+            if (name.equals(path[depth])) {
+                c = next();
+                if (depth == path.length - 1) {
+                    return c == '"' ? parseDate(readString()) : RefTimestampIndex.UNKNOWN;
+                }
+                return c == '{' ? find(path, depth + 1) : RefTimestampIndex.UNKNOWN;
+            }
+            skipValue();
+            c = next();
+            if (c == '}') {
+                return RefTimestampIndex.UNKNOWN;
+            }
+            if (c != ',') {
+                throw syntaxError("',' or '}'");
+            }
+            c = next();
+        }
+    }
+
+    /**
+     * Reads the SHA and the date of the commit whose opening brace has just been consumed, skipping its other members.
+     */
+    private void readCommit(String idMember, String dateMember, Map<String, Long> dates) throws IOException {
+        String id = null;
+        long date = RefTimestampIndex.UNKNOWN;
+        int c = next();
+        while (c != '}') {
+            if (c != '"') {
+                throw syntaxError("member name");
+            }
+            String name = readString();
+            if (next() != ':') {
+                throw syntaxError("':'");
+            }
+            if (name.equals(idMember) || name.equals(dateMember)) {
+                c = next();
+                if (c == '"') {
+                    String value = readString();
+                    if (name.equals(idMember)) {
+                        id = value;
+                    } else {
+                        date = parseDate(value);
+                    }
+                } else {
+                    peeked = c;
+                    skipValue();
+                }
+            } else {
+                skipValue();
+            }
+            c = next();
+            if (c == ',') {
+                c = next();
+            } else if (c != '}') {
+                throw syntaxError("',' or '}'");
+            }
+        }
+        if (id != null && date != RefTimestampIndex.UNKNOWN) {
+            dates.put(id, date);
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            int c = next();
+            switch (c) {
+                case '{':
+                case '[':
+                    nesting++;
+                    break;
+                case '}':
+                case ']':
+                    nesting--;
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case ':':
+                case ',':
+                    break;
+                default:
+                    skipLiteral();
+                    break;
+            }
+        } while (nesting > 0);
+    }
+
+    private void skipLiteral() throws IOException {
+        while (true) {
+            int c = in.read();
+            if (c == -1) {
+                return;
+            }
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                peeked = c;
+                return;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '\\') {
+                read();
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < hex.length; i++) {
+                            hex[i] = (char) read();
+                        }
+                        try {
+                            c = Integer.parseInt(new String(hex), 16);
+                        } catch (NumberFormatException e) {
+                            throw syntaxError("unicode escape");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            sb.append((char) c);
+        }
+    }
+
+    private static long parseDate(String value) throws IOException {
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IOException("Unparseable commit date: " + value, e);
+        }
+    }
+
+    /**
+     * @return the next character which is not whitespace
+     */
+    private int next() throws IOException {
+        int c;
+        if (peeked != -1) {
+            c = peeked;
+            peeked = -1;
+        } else {
+            c = read();
+        }
+        while (Character.isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            throw new EOFException("Unexpected end of JSON document");
+        }
+        return c;
+    }
+
+    private IOException syntaxError(String expected) {
+        return new IOException("Malformed JSON document, expected " + expected);
+    }
+}
@@ -0,0 +1,512 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import jenkins.util.SystemProperties;
+
+/**
+ * Persistent store of commit dates by SHA, so that the {@link CommitDateCache} does not start cold after a restart.
+ * <p>
+ * Entries are fixed size records of {@value #RECORD_SIZE} bytes: the SHA-1, the commit date and a CRC32 of both. New
+ * entries are appended to a log; compaction merges the log into a base file sorted by SHA, which is memory mapped and
+ * binary searched in place, so loading the store costs neither heap nor a read of the whole file. Each compaction
+ * writes a new base generation and switches to it once complete, so readers never see a partially written base.
+ * <p>
+ * A crash while appending leaves a torn record at the end of the log; opening the store truncates the log at the
+ * first record whose checksum does not match, then compacts the rest into the base.
+ */
+public final class CommitDateStore implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(CommitDateStore.class.getName());
+
+    /**
+     * SHA-1 (20 bytes), commit date (8 bytes), CRC32 (4 bytes).
+     */
+    static final int RECORD_SIZE = 32;
+
+    private static final int CHECKED_SIZE = RECORD_SIZE - Integer.BYTES;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int MAGIC = 0x53464152;
+
+    private static final int VERSION = 1;
+
+    private static final String BASE_PREFIX = "base-";
+
+    private static final String BASE_SUFFIX = ".dat";
+
+    private static final String LOG_NAME = "append.log";
+
+    private static final int FLUSH_THRESHOLD = 256;
+
+    /**
+     * Number of log records above which the periodic maintenance compacts the store.
+     */
+    static final int COMPACTION_THRESHOLD =
+            SystemProperties.getInteger(CommitDateStore.class.getName() + ".compactionThreshold", 1 << 16);
+
+    private final Path dir;
+
+    private final Object fileLock = new Object();
+
+    private final Object pendingLock = new Object();
+
+    /**
+     * Guarded by {@link #fileLock}.
+     */
+    private FileChannel log;
+
+    /**
+     * Guarded by {@link #pendingLock}.
+     */
+    private ByteBuffer pending = newPendingBuffer();
+
+    @CheckForNull
+    private volatile Base base;
+
+    private CommitDateStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the store of a directory, recovering a torn log and compacting it into the base.
+     *
+     * @param dir the directory, created if missing
+     * @return the store
+     * @throws IOException if the store could not be opened
+     */
+    @NonNull
+    public static CommitDateStore open(@NonNull Path dir) throws IOException {
+        Files.createDirectories(dir);
+        CommitDateStore store = new CommitDateStore(dir);
+        store.base = store.loadBase();
+        synchronized (store.fileLock) {
+            store.log = FileChannel.open(
+                    dir.resolve(LOG_NAME),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            store.recoverLog();
+        }
+        if (store.getLogSize() > 0) {
+            store.compact();
+        }
+        return store;
+    }
+
+    /**
+     * Looks up the commit date of a SHA in the base.
+     *
+     * @param key the SHA as packed by {@link CommitDateCache#parse}
+     * @return the commit date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN}
+     */
+    long getCommitDate(@NonNull long[] key) {
+        Base current = base;
+        return current == null ? RefTimestampIndex.UNKNOWN : current.find(key);
+    }
+
+    /**
+     * Appends an entry to the log. Entries are buffered and written by batches.
+     *
+     * @param key the SHA as packed by {@link CommitDateCache#parse}
+     * @param date the commit date in epoch milliseconds
+     */
+    void append(@NonNull long[] key, long date) {
+        ByteBuffer full = null;
+        synchronized (pendingLock) {
+            writeRecord(pending, key[0], key[1], (int) (key[2] >>> 32), date);
+            if (!pending.hasRemaining()) {
+                full = pending;
+                pending = newPendingBuffer();
+            }
+        }
+        if (full != null) {
+            try {
+                write(full);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not append to the commit date store in " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered entries to the log.
+     *
+     * @throws IOException if the log could not be written
+     */
+    public void flush() throws IOException {
+        ByteBuffer buffered;
+        synchronized (pendingLock) {
+            if (pending.position() == 0) {
+                return;
+            }
+            buffered = pending;
+            pending = newPendingBuffer();
+        }
+        write(buffered);
+    }
+
+    private void write(ByteBuffer records) throws IOException {
+        records.flip();
+        synchronized (fileLock) {
+            if (log == null) {
+                return;
+            }
+            log.position(log.size());
+            while (records.hasRemaining()) {
+                log.write(records);
+            }
+        }
+    }
+
+    /**
+     * @return whether the log grew enough to be worth merging into the base
+     */
+    public boolean needsCompaction() throws IOException {
+        return getLogSize() >= COMPACTION_THRESHOLD;
+    }
+
+    /**
+     * @return the number of records in the log
+     */
+    long getLogSize() throws IOException {
+        synchronized (fileLock) {
+            return log == null ? 0 : log.size() / RECORD_SIZE;
+        }
+    }
+
+    /**
+     * @return the number of records in the base
+     */
+    long getBaseSize() {
+        Base current = base;
+        return current == null ? 0 : current.count;
+    }
+
+    /**
+     * Merges the log into a new generation of the base and empties the log.
+     *
+     * @throws IOException if the new base could not be written
+     */
+    public void compact() throws IOException {
+        flush();
+        synchronized (fileLock) {
+            if (log == null) {
+                return;
+            }
+            List<long[]> records = readLog();
+            Base previous = base;
+            long generation = previous == null ? 1 : previous.generation + 1;
+            Path file = dir.resolve(BASE_PREFIX + generation + BASE_SUFFIX);
+            long count = merge(previous, records, file);
+            base = Base.map(file, generation, count);
+            log.truncate(0);
+            log.force(true);
+            if (previous != null) {
+                // may fail while the old generation is still mapped on some platforms, it is then removed on next open
+                Files.deleteIfExists(previous.file);
+            }
+            LOGGER.log(Level.FINE, "Compacted {0} log records into {1} records of {2}", new Object[] {
+                records.size(), count, file
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        synchronized (fileLock) {
+            if (log != null) {
+                log.force(true);
+                log.close();
+                log = null;
+            }
+        }
+    }
+
+    @CheckForNull
+    private Base loadBase() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, BASE_PREFIX + "*" + BASE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(CommitDateStore::generationOf).reversed());
+        Base loaded = null;
+        for (Path file : files) {
+            long generation = generationOf(file);
+            if (loaded == null && generation > 0) {
+                loaded = Base.open(file, generation);
+                if (loaded != null) {
+                    continue;
+                }
+                LOGGER.log(Level.WARNING, "Discarding invalid commit date store {0}", file);
+            }
+            // older generations and interrupted compactions
+            Files.deleteIfExists(file);
+        }
+        return loaded;
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(BASE_PREFIX.length(), name.length() - BASE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Truncates the log after the last intact record.
+     */
+    private void recoverLog() throws IOException {
+        long size = log.size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long valid = 0;
+        while (valid + RECORD_SIZE <= size) {
+            record.clear();
+            while (record.hasRemaining() && log.read(record, valid + record.position()) >= 0) {
+                // read the whole record
+            }
+            if (!isIntact(record, 0)) {
+                break;
+            }
+            valid += RECORD_SIZE;
+        }
+        if (valid < size) {
+            LOGGER.log(
+                    Level.WARNING,
+                    "Truncating torn commit date store log in {0} from {1} to {2} bytes",
+                    new Object[] {dir, size, valid});
+            log.truncate(valid);
+            log.force(true);
+        }
+    }
+
+    /**
+     * @return the records of the log, sorted by SHA
+     */
+    private List<long[]> readLog() throws IOException {
+        long size = log.size();
+        List<long[]> records = new ArrayList<>((int) (size / RECORD_SIZE));
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * FLUSH_THRESHOLD);
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = log.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            int complete = buffer.position() / RECORD_SIZE * RECORD_SIZE;
+            for (int offset = 0; offset < complete; offset += RECORD_SIZE) {
+                if (isIntact(buffer, offset)) {
+                    records.add(new long[] {
+                        buffer.getLong(offset),
+                        buffer.getLong(offset + 8),
+                        (long) buffer.getInt(offset + 16) << 32,
+                        buffer.getLong(offset + 20)
+                    });
+                }
+            }
+            position += complete;
+            if (complete == 0) {
+                break;
+            }
+        }
+        records.sort(CommitDateStore::compareKeys);
+        return records;
+    }
+
+    /**
+     * Writes the union of the base and the sorted log records into a new base file.
+     *
+     * @return the number of records written
+     */
+    private static long merge(@CheckForNull Base previous, List<long[]> records, Path file) throws IOException {
+        long count = 0;
+        long baseCount = previous == null ? 0 : previous.count;
+        long b = 0;
+        int l = 0;
+        long[] last = null;
+        try (OutputStream os = Files.newOutputStream(file);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            while (b < baseCount || l < records.size()) {
+                long[] next;
+                if (l >= records.size()) {
+                    next = previous.record(b++);
+                } else if (b >= baseCount) {
+                    next = records.get(l++);
+                } else {
+                    long[] fromBase = previous.record(b);
+                    if (compareKeys(fromBase, records.get(l)) <= 0) {
+                        next = fromBase;
+                        b++;
+                    } else {
+                        next = records.get(l++);
+                    }
+                }
+                if (last != null && compareKeys(last, next) == 0) {
+                    // dates never change for a SHA, duplicates are dropped
+                    continue;
+                }
+                record.clear();
+                writeRecord(record, next[0], next[1], (int) (next[2] >>> 32), next[3]);
+                out.write(record.array());
+                last = next;
+                count++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            header.putLong(0, count);
+            channel.write(header, 8);
+            channel.force(true);
+        }
+        return count;
+    }
+
+    private static int compareKeys(long[] a, long[] b) {
+        int c = Long.compareUnsigned(a[0], b[0]);
+        if (c == 0) {
+            c = Long.compareUnsigned(a[1], b[1]);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(a[2], b[2]);
+        }
+        return c;
+    }
+
+    private static ByteBuffer newPendingBuffer() {
+        return ByteBuffer.allocate(RECORD_SIZE * FLUSH_THRESHOLD);
+    }
+
+    private static void writeRecord(ByteBuffer buffer, long k0, long k1, int k2, long date) {
+        int start = buffer.position();
+        buffer.putLong(k0).putLong(k1).putInt(k2).putLong(date);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, CHECKED_SIZE);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private static boolean isIntact(ByteBuffer buffer, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, CHECKED_SIZE));
+        return (int) crc.getValue() == buffer.getInt(offset + CHECKED_SIZE);
+    }
+
+    /**
+     * A memory mapped generation of the base.
+     */
+    private static final class Base {
+
+        private final Path file;
+
+        private final long generation;
+
+        private final long count;
+
+        private final MappedByteBuffer map;
+
+        private Base(Path file, long generation, long count, MappedByteBuffer map) {
+            this.file = file;
+            this.generation = generation;
+            this.count = count;
+            this.map = map;
+        }
+
+        /**
+         * @return the base or {@code null} if the file is not a complete base
+         */
+        @CheckForNull
+        static Base open(Path file, long generation) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE) {
+                    return null;
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                    // read the whole header
+                }
+                long count = header.getLong(8);
+                if (header.getInt(0) != MAGIC
+                        || header.getInt(4) != VERSION
+                        || count < 0
+                        || size != HEADER_SIZE + count * RECORD_SIZE) {
+                    return null;
+                }
+                return new Base(file, generation, count, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+        }
+
+        static Base map(Path file, long generation, long count) throws IOException {
+            Base mapped = open(file, generation);
+            if (mapped == null || mapped.count != count) {
+                throw new IOException("Incomplete commit date store written to " + file);
+            }
+            return mapped;
+        }
+
+        long[] record(long index) {
+            int offset = offset(index);
+            return new long[] {
+                map.getLong(offset),
+                map.getLong(offset + 8),
+                (long) map.getInt(offset + 16) << 32,
+                map.getLong(offset + 20)
+            };
+        }
+
+        long find(long[] key) {
+            long low = 0;
+            long high = count - 1;
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                int offset = offset(mid);
+                int c = Long.compareUnsigned(map.getLong(offset), key[0]);
+                if (c == 0) {
+                    c = Long.compareUnsigned(map.getLong(offset + 8), key[1]);
+                }
+                if (c == 0) {
+                    c = Long.compareUnsigned((long) map.getInt(offset + 16) << 32, key[2]);
+                }
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    // a damaged record is a miss, the date is then resolved again
+                    return isIntact(map, offset) ? map.getLong(offset + 20) : RefTimestampIndex.UNKNOWN;
+                }
+            }
+            return RefTimestampIndex.UNKNOWN;
+        }
+
+        private static int offset(long index) {
+            return Math.toIntExact(HEADER_SIZE + index * RECORD_SIZE);
+        }
+    }
+}
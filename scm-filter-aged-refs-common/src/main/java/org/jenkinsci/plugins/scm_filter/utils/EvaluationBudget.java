@@ -0,0 +1,217 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Bounds the wall clock time the aged refs filters spend evaluating heads, per head and per scan, so that a slow SCM
+ * server does not hold the scan thread, and the indexing executor it belongs to, for an unbounded time.
+ * <p>
+ * Heads are evaluated on a separate thread the scan thread waits for, at most until the first of the head and scan
+ * deadlines; the evaluation is then interrupted. Heads not evaluated in time, and all heads once the scan budget is
+ * spent, are decided cheaply instead: from their cached age when there is one, by a configured default otherwise.
+ * Overruns are reported in the scan log.
+ */
+public final class EvaluationBudget {
+
+    private static final Logger LOGGER = Logger.getLogger(EvaluationBudget.class.getName());
+
+    /**
+     * No deadline, heads are evaluated on the scan thread.
+     */
+    public static final EvaluationBudget UNLIMITED = new EvaluationBudget(0, 0, false);
+
+    /**
+     * The threads evaluating heads, {@code null} until first used and once shut down, as Jenkins may be restarted
+     * within the same JVM.
+     */
+    @CheckForNull
+    private static ExecutorService evaluators;
+
+    private final long headMillis;
+
+    private final long scanMillis;
+
+    private final boolean excludeByDefault;
+
+    /**
+     * @param headMillis the time allowed to evaluate one head, {@code 0} for no limit
+     * @param scanMillis the time allowed to evaluate all heads of a scan, {@code 0} for no limit
+     * @param excludeByDefault whether heads not evaluated in time and without a cached age are excluded
+     */
+    public EvaluationBudget(long headMillis, long scanMillis, boolean excludeByDefault) {
+        this.headMillis = Math.max(0, headMillis);
+        this.scanMillis = Math.max(0, scanMillis);
+        this.excludeByDefault = excludeByDefault;
+    }
+
+    public boolean isUnlimited() {
+        return headMillis == 0 && scanMillis == 0;
+    }
+
+    /**
+     * Starts the budget of a scan.
+     *
+     * @return the scan budget, its clock running from now
+     */
+    @NonNull
+    public Scan start() {
+        return new Scan(System.currentTimeMillis());
+    }
+
+    /**
+     * An evaluation of a head.
+     */
+    @FunctionalInterface
+    public interface Evaluation {
+        boolean isExcluded() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A decision taken without calling the SCM.
+     */
+    @FunctionalInterface
+    public interface Fallback {
+        /**
+         * @return whether the head is excluded or {@code null} if it has no cached age
+         */
+        @CheckForNull
+        Boolean isExcluded();
+    }
+
+    private static synchronized ExecutorService evaluators() {
+        if (evaluators == null) {
+            evaluators = Executors.newCachedThreadPool(new ClassLoaderSanityThreadFactory(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Aged refs evaluation")));
+        }
+        return evaluators;
+    }
+
+    /**
+     * Interrupts the running evaluations; the next evaluation starts new threads.
+     */
+    static synchronized void shutdown() {
+        if (evaluators != null) {
+            evaluators.shutdownNow();
+            evaluators = null;
+        }
+    }
+
+    /**
+     * The budget of one scan.
+     */
+    public final class Scan {
+
+        private final long startedAt;
+
+        private volatile boolean overrunReported;
+
+        Scan(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * Evaluates a head within the budget left.
+         *
+         * @param listener the scan listener overruns are reported to
+         * @param head the head name
+         * @param evaluation evaluates the head, calling the SCM if needed
+         * @param fallback decides the head if it cannot be evaluated in time
+         * @return whether the head is excluded
+         * @throws IOException if the evaluation failed
+         * @throws InterruptedException if interrupted while evaluating
+         */
+        public boolean evaluate(
+                @NonNull TaskListener listener,
+                @NonNull String head,
+                @NonNull Evaluation evaluation,
+                @NonNull Fallback fallback)
+                throws IOException, InterruptedException {
+            if (isUnlimited()) {
+                return evaluation.isExcluded();
+            }
+            long now = System.currentTimeMillis();
+            long scanLeft = scanMillis == 0 ? Long.MAX_VALUE : startedAt + scanMillis - now;
+            if (scanLeft <= 0) {
+                Boolean cached = fallback.isExcluded();
+                boolean excluded = cached != null ? cached : excludeByDefault;
+                if (!overrunReported) {
+                    overrunReported = true;
+                    listener.getLogger()
+                            .println("Aged refs filter spent its " + TimeUnit.MILLISECONDS.toSeconds(scanMillis)
+                                    + " s scan budget, the remaining heads are decided from their cached age or "
+                                    + (excludeByDefault ? "excluded" : "kept"));
+                }
+                LOGGER.fine(() -> "Out of scan budget, " + (excluded ? "excluding " : "keeping ") + head);
+                return excluded;
+            }
+            long timeout = headMillis == 0 ? scanLeft : Math.min(headMillis, scanLeft);
+            Future<Boolean> future;
+            try {
+                future = submit(evaluation);
+            } catch (RejectedExecutionException e) {
+                // shutting down, the head is evaluated on the scan thread
+                LOGGER.fine(() -> "Evaluation of " + head + " rejected, evaluating it without deadline");
+                return evaluation.isExcluded();
+            }
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                Boolean cached = fallback.isExcluded();
+                boolean excluded = cached != null ? cached : excludeByDefault;
+                listener.getLogger()
+                        .println("Could not evaluate the age of " + head + " within "
+                                + TimeUnit.MILLISECONDS.toSeconds(timeout) + " s, "
+                                + (excluded ? "excluding" : "keeping") + " it "
+                                + (cached != null ? "from its cached age" : "by default"));
+                return excluded;
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        private Future<Boolean> submit(Evaluation evaluation) {
+            // the evaluation may look up credentials, it runs with the authentication of the scan
+            Authentication auth = Jenkins.getAuthentication2();
+            return evaluators().submit(() -> {
+                try (ACLContext ignored = ACL.as2(auth)) {
+                    return evaluation.isExcluded();
+                }
+            });
+        }
+    }
+}
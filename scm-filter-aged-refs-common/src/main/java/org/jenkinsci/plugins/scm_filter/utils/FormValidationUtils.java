@@ -1,6 +1,10 @@
 package org.jenkinsci.plugins.scm_filter.utils;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Util;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
 
 public class FormValidationUtils {
     public static FormValidation checkRetentionDays(String value) {
@@ -21,4 +25,37 @@ public class FormValidationUtils {
 
         return formValidation;
     }
+
+    public static FormValidation checkTimeoutSeconds(String value) {
+        if (value == null || value.isBlank()) {
+            return FormValidation.ok();
+        }
+        try {
+            if (Integer.parseInt(value.trim()) < 0) {
+                return FormValidation.error("Not a positive number or zero");
+            }
+        } catch (NumberFormatException e) {
+            return FormValidation.error("Not a number");
+        }
+        return FormValidation.ok();
+    }
+
+    public static ListBoxModel fillPullRequestAgeSourceItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add("Default of the SCM provider", "");
+        for (PullRequestAgeSource source : PullRequestAgeSource.values()) {
+            items.add(source.getName(), source.name());
+        }
+        return items;
+    }
+
+    @CheckForNull
+    public static PullRequestAgeSource parsePullRequestAgeSource(@CheckForNull String value) {
+        String name = Util.fixEmptyAndTrim(value);
+        return name == null ? null : PullRequestAgeSource.valueOf(name);
+    }
+
+    public static String pullRequestAgeSourceToString(@CheckForNull PullRequestAgeSource source) {
+        return source == null ? "" : source.name();
+    }
 }
@@ -0,0 +1,374 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.util.XStream2;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead2;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+
+/**
+ * Decisions taken for the heads of a source during previous scans.
+ * <p>
+ * As long as the hash of a head does not move, the commit time its age was computed from does not change either:
+ * the head stays included until its commit time falls behind the retention threshold and stays excluded forever. A
+ * decision records the hash and that commit time, so that later scans decide unchanged heads without any API call,
+ * whatever the retention configured by then. Commit times are either exact or, when the resolution stopped at the
+ * first commit recent enough, a lower bound that can only confirm an inclusion.
+ * <p>
+ * Decisions are keyed by the {@linkplain #keyOf key} of their head: the name of a branch, the id and checkout strategy
+ * of a change request, whose head name depends on the strategies the source builds.
+ * <p>
+ * Decisions are kept per source, loaded on first use, written to {@code JENKINS_HOME} by the periodic maintenance and
+ * unloaded once the source has not been scanned for a while. Each decision is dropped once it has not been confirmed,
+ * by a scan finding its head unmoved, for {@value #EXPIRY_DAYS} days.
+ * <p>
+ * When the age of a head cannot be resolved, its last decision stands in for it. A head that moved since only keeps an
+ * inclusion, confirmed less than {@value #DEFAULT_MAX_STALENESS_HOURS} hours ago: an exclusion says nothing about the
+ * commits pushed since. The {@code org.jenkinsci.plugins.scm_filter.utils.HeadDecisions.maxStalenessHours} system
+ * property changes this, {@code 0} disables it.
+ */
+public final class HeadDecisions {
+
+    private static final Logger LOGGER = Logger.getLogger(HeadDecisions.class.getName());
+
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    static final int EXPIRY_DAYS = 90;
+
+    /**
+     * Decisions not confirmed for that long are dropped, so that deleted heads do not accumulate.
+     */
+    private static final long EXPIRY_MILLIS = TimeUnit.DAYS.toMillis(EXPIRY_DAYS);
+
+    /**
+     * Confirmations are written at most that often, rather than rewriting the decisions of a source after every scan.
+     */
+    private static final long CONFIRMATION_WRITE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Reads decisions with the class loader of this copy of the module: the one of Jenkins resolves {@link Decision}
+     * to the copy bundled in another provider plugin.
+     */
+    static final XStream2 XSTREAM = new XStream2();
+
+    static final int DEFAULT_MAX_STALENESS_HOURS = 24;
+
+    private static final long MAX_STALENESS_MILLIS = TimeUnit.HOURS.toMillis(Math.max(
+            0,
+            SystemProperties.getInteger(
+                    HeadDecisions.class.getName() + ".maxStalenessHours", DEFAULT_MAX_STALENESS_HOURS)));
+
+    private static final Map<String, HeadDecisions> LOADED = new ConcurrentHashMap<>();
+
+    static {
+        XSTREAM.setClassLoader(HeadDecisions.class.getClassLoader());
+    }
+
+    private static final HeadDecisions NONE = new HeadDecisions(null);
+
+    @CheckForNull
+    private static volatile Path directory;
+
+    @CheckForNull
+    private final XmlFile file;
+
+    private final Map<String, Decision> decisions = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    HeadDecisions(@CheckForNull XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets the directory decisions are persisted to, {@code null} to keep them in memory only.
+     */
+    static void setDirectory(@CheckForNull Path dir) {
+        directory = dir;
+    }
+
+    /**
+     * Gets the decisions of a source, loading them on first use.
+     *
+     * @param source the source, if known
+     * @return the decisions, never recording anything if the source is not known
+     */
+    @NonNull
+    public static HeadDecisions of(@CheckForNull SCMSource source) {
+        SCMSourceOwner owner = source == null ? null : source.getOwner();
+        if (owner == null) {
+            return NONE;
+        }
+        String key = owner.getFullName() + "::" + source.getId();
+        HeadDecisions loaded = LOADED.computeIfAbsent(key, HeadDecisions::load);
+        loaded.lastAccess = System.currentTimeMillis();
+        return loaded;
+    }
+
+    private static HeadDecisions load(String key) {
+        Path dir = directory;
+        if (dir == null) {
+            return new HeadDecisions(null);
+        }
+        return read(new XmlFile(XSTREAM, dir.resolve(Util.getDigestOf(key) + ".xml").toFile()));
+    }
+
+    @NonNull
+    static HeadDecisions read(@NonNull XmlFile file) {
+        HeadDecisions loaded = new HeadDecisions(file);
+        if (file.exists()) {
+            try {
+                Object read = file.read();
+                if (read instanceof Map) {
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) read).entrySet()) {
+                        if (e.getKey() instanceof String && e.getValue() instanceof Decision) {
+                            loaded.decisions.put((String) e.getKey(), (Decision) e.getValue());
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Discarding unreadable head decisions " + file, e);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Gets the key the decisions of a head are recorded under.
+     *
+     * @param head the head
+     * @return the branch or tag name, or the {@linkplain #changeRequestKey key} of a change request
+     */
+    @NonNull
+    public static String keyOf(@NonNull SCMHead head) {
+        if (head instanceof ChangeRequestSCMHead) {
+            String id = ((ChangeRequestSCMHead) head).getId();
+            return head instanceof ChangeRequestSCMHead2
+                    ? changeRequestKey(id, ((ChangeRequestSCMHead2) head).getCheckoutStrategy())
+                    : '#' + id;
+        }
+        return head.getName();
+    }
+
+    /**
+     * Gets the key the decisions of a change request built with a checkout strategy are recorded under. Git ref names
+     * cannot contain spaces, so this never collides with a branch name.
+     *
+     * @param id the change request id, e.g. its number
+     * @param strategy the checkout strategy
+     * @return the key
+     */
+    @NonNull
+    public static String changeRequestKey(@NonNull String id, @NonNull ChangeRequestCheckoutStrategy strategy) {
+        return '#' + id + ' ' + strategy.name();
+    }
+
+    /**
+     * Decides a change request from a previous decision taken for any of its checkout strategies, if its hash did not
+     * move since: the age of a change request is the one of its head whatever the strategy it is built with.
+     *
+     * @param id the change request id, e.g. its number
+     * @param hash the current head hash
+     * @param ageSource what the commit time of the head is the date of
+     * @param threshold the acceptable date time threshold
+     * @return whether the change request is excluded or {@code null} if it has to be resolved
+     */
+    @CheckForNull
+    public Boolean isChangeRequestExcluded(
+            @NonNull String id, @CheckForNull String hash, @NonNull PullRequestAgeSource ageSource, long threshold) {
+        for (ChangeRequestCheckoutStrategy strategy : ChangeRequestCheckoutStrategy.values()) {
+            Boolean decided = isExcluded(changeRequestKey(id, strategy), hash, ageSource, threshold);
+            if (decided != null) {
+                return decided;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decides a head from a previous decision, if its hash did not move since, which confirms that decision.
+     *
+     * @param head the head {@linkplain #keyOf key}
+     * @param hash the current head hash
+     * @param ageSource what the commit time of the head is the date of
+     * @param threshold the acceptable date time threshold
+     * @return whether the head is excluded or {@code null} if it has to be resolved
+     */
+    @CheckForNull
+    public Boolean isExcluded(
+            @NonNull String head, @CheckForNull String hash, @NonNull PullRequestAgeSource ageSource, long threshold) {
+        return isExcluded(head, hash, ageSource, threshold, System.currentTimeMillis());
+    }
+
+    @CheckForNull
+    Boolean isExcluded(
+            @NonNull String head,
+            @CheckForNull String hash,
+            @NonNull PullRequestAgeSource ageSource,
+            long threshold,
+            long now) {
+        if (this == NONE || hash == null) {
+            return null;
+        }
+        Decision decision = decisions.get(key(head, ageSource));
+        if (decision == null || !hash.equals(decision.hash)) {
+            return null;
+        }
+        Boolean excluded;
+        if (decision.commitTime >= threshold) {
+            excluded = false;
+        } else if (decision.exact) {
+            excluded = true;
+        } else {
+            return null;
+        }
+        confirm(decision, now);
+        return excluded;
+    }
+
+    private void confirm(Decision decision, long now) {
+        long previous = decision.recorded;
+        decision.recorded = now;
+        if (now - previous > CONFIRMATION_WRITE_MILLIS) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Decides a head whose age could not be resolved from its last decision. A head that did not move keeps the
+     * decision taken from its exact commit time, which confirms it. A head that moved, or whose hash is not known, only
+     * keeps an inclusion confirmed recently enough.
+     *
+     * @param head the head {@linkplain #keyOf key}
+     * @param hash the current head hash, {@code null} if not known
+     * @param ageSource what the commit time of the head is the date of
+     * @param threshold the acceptable date time threshold
+     * @return whether the head is excluded or {@code null} if it has no decision that applies
+     */
+    @CheckForNull
+    public Boolean getLastKnownGood(
+            @NonNull String head, @CheckForNull String hash, @NonNull PullRequestAgeSource ageSource, long threshold) {
+        return getLastKnownGood(head, hash, ageSource, threshold, System.currentTimeMillis(), MAX_STALENESS_MILLIS);
+    }
+
+    @CheckForNull
+    Boolean getLastKnownGood(
+            @NonNull String head,
+            @CheckForNull String hash,
+            @NonNull PullRequestAgeSource ageSource,
+            long threshold,
+            long now,
+            long maxStalenessMillis) {
+        if (this == NONE) {
+            return null;
+        }
+        Decision decision = decisions.get(key(head, ageSource));
+        if (decision == null) {
+            return null;
+        }
+        if (decision.exact && decision.hash.equals(hash)) {
+            confirm(decision, now);
+            return decision.commitTime < threshold;
+        }
+        if (now - decision.recorded > maxStalenessMillis || decision.exact && decision.commitTime < threshold) {
+            // an exclusion says nothing about the commits pushed since
+            return null;
+        }
+        // a lower bound was only ever recorded for an inclusion
+        return false;
+    }
+
+    /**
+     * Records the commit time a head was decided from.
+     *
+     * @param head the head {@linkplain #keyOf key}
+     * @param hash the head hash
+     * @param ageSource what the commit time of the head is the date of
+     * @param commitTime the commit time in epoch milliseconds
+     * @param exact {@code false} if the commit time is only a lower bound
+     */
+    public void record(
+            @NonNull String head,
+            @CheckForNull String hash,
+            @NonNull PullRequestAgeSource ageSource,
+            long commitTime,
+            boolean exact) {
+        if (this == NONE || hash == null || commitTime == RefTimestampIndex.UNKNOWN) {
+            return;
+        }
+        decisions.put(key(head, ageSource), new Decision(hash, commitTime, exact, System.currentTimeMillis()));
+        dirty = true;
+    }
+
+    private static String key(String head, PullRequestAgeSource ageSource) {
+        return ageSource.name() + ':' + head;
+    }
+
+    /**
+     * Writes the modified decisions and unloads the sources not scanned recently.
+     */
+    static void saveAll() {
+        long now = System.currentTimeMillis();
+        for (Iterator<HeadDecisions> it = LOADED.values().iterator(); it.hasNext(); ) {
+            HeadDecisions loaded = it.next();
+            loaded.save(now);
+            if (now - loaded.lastAccess > IDLE_MILLIS) {
+                it.remove();
+            }
+        }
+    }
+
+    void save(long now) {
+        if (!dirty || file == null) {
+            return;
+        }
+        dirty = false;
+        decisions.values().removeIf(d -> now - d.recorded > EXPIRY_MILLIS);
+        try {
+            file.write(new HashMap<>(decisions));
+        } catch (IOException e) {
+            dirty = true;
+            LOGGER.log(Level.WARNING, "Could not save head decisions " + file, e);
+        }
+    }
+
+    /**
+     * The decision taken for a head.
+     */
+    static final class Decision {
+
+        private final String hash;
+
+        private final long commitTime;
+
+        private final boolean exact;
+
+        private volatile long recorded;
+
+        Decision(String hash, long commitTime, boolean exact, long recorded) {
+            this.hash = hash;
+            this.commitTime = commitTime;
+            this.exact = exact;
+            this.recorded = recorded;
+        }
+    }
+}
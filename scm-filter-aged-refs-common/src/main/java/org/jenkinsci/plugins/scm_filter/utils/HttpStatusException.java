@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+
+/**
+ * A call answered with an unexpected HTTP status, which {@link LookupRetry} retries if the status is transient.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * @param status the HTTP status, {@code 0} if the call got no answer
+     * @param message the detail message
+     * @param cause the cause, if any
+     */
+    public HttpStatusException(int status, String message, @CheckForNull Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public HttpStatusException(int status, String message) {
+        this(status, message, null);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return whether the call may succeed if retried: no answer, a timeout, a rate limit or a server error
+     */
+    public boolean isTransient() {
+        return status == 0 || status == 408 || status == 429 || status >= 500;
+    }
+}
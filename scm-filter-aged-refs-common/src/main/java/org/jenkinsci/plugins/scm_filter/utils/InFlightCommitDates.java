@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Table of the commit date lookups in flight in the plugin, so that concurrent callers asking for the same SHA share
+ * a single call to the SCM.
+ * <p>
+ * This happens when several sources scan the same commits at once: forks of a repository, several projects on one
+ * repository or a pull request head that is also a branch head. The first caller runs the lookup, the others wait for
+ * its result; the entry is removed as soon as the lookup completes, by then the {@link CommitDateCache} has the date.
+ * Joining a lookup in flight is a single read of a concurrent map, without locking.
+ * <p>
+ * Callers may look the SHA up on different servers or with different credentials, so only a date is shared: when the
+ * lookup they joined fails or does not find the commit, each caller runs its own lookup.
+ */
+public final class InFlightCommitDates {
+
+    private static final ConcurrentHashMap<String, CompletableFuture<Long>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Notified when a caller joins a lookup in flight, so that tests can complete the lookup once all callers joined.
+     */
+    @CheckForNull
+    static volatile Runnable joinListener;
+
+    private InFlightCommitDates() {}
+
+    /**
+     * Runs a lookup, unless one is already in flight for the SHA, in which case its result is awaited instead. A
+     * caller joining a lookup that fails, is interrupted or does not find the commit runs its own lookup.
+     *
+     * @param sha the commit SHA
+     * @param loader fetches the commit date from the SCM
+     * @return the commit date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if the loader could not
+     *     resolve it
+     * @throws IOException if the lookup of the caller failed
+     * @throws InterruptedException if interrupted while looking up or waiting
+     */
+    public static long load(@NonNull String sha, @NonNull RefTimestampIndex.CommitDateLoader loader)
+            throws IOException, InterruptedException {
+        CompletableFuture<Long> inFlight = IN_FLIGHT.get(sha);
+        if (inFlight == null) {
+            CompletableFuture<Long> mine = new CompletableFuture<>();
+            inFlight = IN_FLIGHT.putIfAbsent(sha, mine);
+            if (inFlight == null) {
+                return run(sha, loader, mine);
+            }
+        }
+        Runnable listener = joinListener;
+        if (listener != null) {
+            listener.run();
+        }
+        long date;
+        try {
+            date = inFlight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            // the lookup failed for the caller running it, e.g. for its credentials, not necessarily for this one
+            return loader.load(sha);
+        }
+        return date != RefTimestampIndex.UNKNOWN ? date : loader.load(sha);
+    }
+
+    private static long run(String sha, RefTimestampIndex.CommitDateLoader loader, CompletableFuture<Long> mine)
+            throws IOException, InterruptedException {
+        try {
+            long date = loader.load(sha);
+            mine.complete(date);
+            return date;
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            IN_FLIGHT.remove(sha, mine);
+        }
+    }
+
+    /**
+     * @return the number of lookups in flight
+     */
+    static int size() {
+        return IN_FLIGHT.size();
+    }
+}
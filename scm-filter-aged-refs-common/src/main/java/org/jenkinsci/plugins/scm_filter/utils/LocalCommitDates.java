@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.plugins.git.AbstractGitSCMSource;
+import jenkins.scm.api.SCMSource;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * Reads commit dates from the cache repository the git plugin keeps for a git based source under
+ * {@code $JENKINS_HOME/caches}, so that heads already fetched by Jenkins are resolved without calling the SCM API.
+ * <p>
+ * Commits are looked up in the commit-graph of the repository when it has one, which holds the commit dates without
+ * inflating the commit objects, and read from the object database otherwise. JGit only reads commit-graphs when its
+ * configuration enables them, so commits are read through a repository instance of their own whose configuration
+ * enables them, leaving the instances shared with other users of JGit untouched. Refs are listed through the JGit
+ * {@link RepositoryCache}, which keeps repositories open until unused for a while.
+ */
+public final class LocalCommitDates {
+
+    private static final Logger LOGGER = Logger.getLogger(LocalCommitDates.class.getName());
+
+    private LocalCommitDates() {}
+
+    /**
+     * Finds the cache repository of a source, named like the git plugin names it after the remote URL.
+     *
+     * @param source the source
+     * @return the git directory of the cache repository or {@code null} if the source has none (yet)
+     */
+    @CheckForNull
+    public static File getCacheRepository(@CheckForNull SCMSource source) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (!(source instanceof AbstractGitSCMSource) || jenkins == null) {
+            return null;
+        }
+        String remote = ((AbstractGitSCMSource) source).getRemote();
+        File cache = new File(new File(jenkins.getRootDir(), "caches"), "git-" + Util.getDigestOf(remote));
+        return RepositoryCache.FileKey.resolve(cache, FS.DETECTED);
+    }
+
+    /**
+     * Lists the refs of a local repository under a prefix, e.g. the remote branches fetched into a cache repository.
+     *
+     * @param gitDir the git directory of the repository
+     * @param prefix the ref prefix, ending with a slash
+     * @return the SHAs the refs point to by ref name without the prefix, without symbolic refs
+     */
+    @NonNull
+    public static Map<String, String> getRefs(@NonNull File gitDir, @NonNull String prefix) {
+        Map<String, String> refs = new HashMap<>();
+        Repository repository;
+        try {
+            repository = RepositoryCache.open(RepositoryCache.FileKey.exact(gitDir, FS.DETECTED), true);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not open " + gitDir + ", listing no refs", e);
+            return refs;
+        }
+        try {
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix(prefix)) {
+                if (!ref.isSymbolic() && ref.getObjectId() != null) {
+                    refs.put(ref.getName().substring(prefix.length()), ref.getObjectId().name());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not list the refs of " + gitDir, e);
+        } finally {
+            repository.close();
+        }
+        return refs;
+    }
+
+    /**
+     * Reads the committer dates of commits from a local repository, all of them with a single walk.
+     *
+     * @param gitDir the git directory of the repository
+     * @param shas the commit SHAs
+     * @return the commit dates in epoch milliseconds by SHA, without the commits the repository does not hold
+     */
+    @NonNull
+    public static Map<String, Long> getCommitDates(@NonNull File gitDir, @NonNull Collection<String> shas) {
+        Map<String, Long> dates = new HashMap<>();
+        Repository repository;
+        try {
+            // not the cached instance, whose configuration is shared with every other user of JGit
+            repository = new FileRepositoryBuilder()
+                    .setGitDir(gitDir)
+                    .setFS(FS.DETECTED)
+                    .setMustExist(true)
+                    .build();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not open " + gitDir + ", resolving commit dates remotely", e);
+            return dates;
+        }
+        // JGit only reads commit-graphs when enabled, unlike git which also writes them by default
+        repository
+                .getConfig()
+                .setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            for (String sha : shas) {
+                if (!ObjectId.isId(sha)) {
+                    continue;
+                }
+                RevCommit commit = walk.lookupCommit(ObjectId.fromString(sha));
+                try {
+                    walk.parseHeaders(commit);
+                    dates.put(sha, TimeUnit.SECONDS.toMillis(commit.getCommitTime()));
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                    // not fetched yet, or not a commit
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read commit dates from " + gitDir + ", resolving them remotely", e);
+        } finally {
+            repository.close();
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries the lookups failing transiently, with a jittered exponential backoff, behind the {@link CircuitBreaker} of
+ * their endpoint.
+ * <p>
+ * A lookup is attempted at most {@value #MAX_ATTEMPTS} times. Failures without an HTTP answer and
+ * {@linkplain HttpStatusException#isTransient() transient} statuses are retried and count towards opening the
+ * breaker; other statuses prove the server answers and are reported at once. While the breaker is open, lookups fail
+ * fast with a {@link CircuitOpenException}.
+ */
+public final class LookupRetry {
+
+    static final int MAX_ATTEMPTS = 3;
+
+    static final long BASE_DELAY_MILLIS = 250;
+
+    static final long MAX_DELAY_MILLIS = 4000;
+
+    private LookupRetry() {}
+
+    /**
+     * A lookup to retry.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Lookup<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Runs a lookup.
+     *
+     * @param endpoint identifies the server and the endpoint called, e.g. its URL without parameters
+     * @param lookup the lookup
+     * @param <T> the result type
+     * @return the lookup result
+     * @throws IOException if the last attempt failed or the breaker of the endpoint is open
+     * @throws InterruptedException if interrupted while looking up or backing off
+     */
+    public static <T> T call(@NonNull String endpoint, @NonNull Lookup<T> lookup)
+            throws IOException, InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.of(endpoint);
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.tryAcquire(System.currentTimeMillis())) {
+                throw new CircuitOpenException(endpoint);
+            }
+            try {
+                T result = lookup.call();
+                breaker.onSuccess();
+                return result;
+            } catch (IOException e) {
+                if (e instanceof HttpStatusException && !((HttpStatusException) e).isTransient()) {
+                    breaker.onSuccess();
+                    throw e;
+                }
+                breaker.onFailure(System.currentTimeMillis());
+                if (attempt >= MAX_ATTEMPTS || breaker.isOpen()) {
+                    throw e;
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                breaker.onAbandoned();
+                throw e;
+            }
+            Thread.sleep(backoff(attempt));
+        }
+    }
+
+    /**
+     * @return a delay between half and all of the exponential delay of the attempt, so that the lookups failing
+     *     together do not retry together
+     */
+    static long backoff(int attempt) {
+        long delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
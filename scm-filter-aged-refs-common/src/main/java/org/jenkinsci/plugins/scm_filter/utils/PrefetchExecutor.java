@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+
+/**
+ * Executor resolving head timestamps in the background while a scan of the plugin evaluates its heads. Each provider
+ * plugin bundles its own copy of this module, so each one has its own executor.
+ * <p>
+ * Resolutions are single blocking API calls, so they run on virtual threads when the JVM provides them and on a pool
+ * of daemon threads otherwise. At most {@value #DEFAULT_CONCURRENCY} of them run at once by default, across all
+ * scans of the plugin; the {@code org.jenkinsci.plugins.scm_filter.utils.PrefetchExecutor.concurrency} system
+ * property changes this, {@code 0} disables the prefetch.
+ * <p>
+ * The threads are stopped when the plugin is, and started again on the next submission, as Jenkins may be restarted
+ * within the same JVM.
+ */
+public final class PrefetchExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(PrefetchExecutor.class.getName());
+
+    static final int DEFAULT_CONCURRENCY = 16;
+
+    private static final int CONCURRENCY =
+            SystemProperties.getInteger(PrefetchExecutor.class.getName() + ".concurrency", DEFAULT_CONCURRENCY);
+
+    @CheckForNull
+    private static final PrefetchExecutor INSTANCE = CONCURRENCY > 0 ? new PrefetchExecutor(CONCURRENCY) : null;
+
+    private final int concurrency;
+
+    /**
+     * Bounds the tasks running on virtual threads, {@code null} when the pool size already does.
+     */
+    @CheckForNull
+    private final Semaphore permits;
+
+    /**
+     * The running executor, {@code null} once shut down.
+     */
+    @CheckForNull
+    private ExecutorService executor;
+
+    PrefetchExecutor(int concurrency) {
+        this.concurrency = concurrency;
+        this.executor = newVirtualThreadPerTaskExecutor();
+        this.permits = executor != null ? new Semaphore(concurrency) : null;
+    }
+
+    /**
+     * @return the executor shared by the scans of the plugin or {@code null} if the prefetch is disabled
+     */
+    @CheckForNull
+    public static PrefetchExecutor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Submits a resolution.
+     *
+     * @param task the resolution
+     * @param <T> the result type
+     * @return the pending result
+     * @throws RejectedExecutionException if the executor is being shut down
+     */
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task) {
+        if (permits == null) {
+            return executor().submit(task);
+        }
+        return executor().submit(() -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null && permits != null) {
+            executor = newVirtualThreadPerTaskExecutor();
+        }
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    concurrency,
+                    concurrency,
+                    1,
+                    TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(),
+                    new ClassLoaderSanityThreadFactory(
+                            new NamingThreadFactory(new DaemonThreadFactory(), "Aged refs prefetch")));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * Interrupts the running resolutions and drops the queued ones; the next submission starts new threads.
+     */
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * The plugin is built for Java 17, virtual threads are looked up reflectively when running on Java 21 or newer.
+     */
+    @CheckForNull
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Virtual threads unavailable, falling back to platform threads", e);
+            return null;
+        }
+    }
+}
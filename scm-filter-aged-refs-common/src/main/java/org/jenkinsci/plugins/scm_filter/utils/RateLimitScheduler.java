@@ -0,0 +1,333 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.http.HttpHeaders;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jenkins.util.SystemProperties;
+
+/**
+ * Schedules the API calls made with one credential, which share its rate limit with the calls of the branch source.
+ * <p>
+ * Three mechanisms keep the calls of the filters from exhausting the quota:
+ * <ul>
+ *     <li>a token bucket, seeded from the remaining quota and reset time reported by each response, spreads the quota
+ *     left above a reserve kept for the branch source until the reset, allowing bursts of half of that quota;</li>
+ *     <li>the number of concurrent calls is halved whenever a response reports a secondary rate limit, which also
+ *     pauses all calls for the advertised delay, and grows back by one per round of successful calls;</li>
+ *     <li>calls are granted in round robin across lanes, one per scanned source, so that a large repository does not
+ *     starve the others scanned at the same time.</li>
+ * </ul>
+ * Until a response reports the quota, only the concurrency is bounded. The concurrency starts at, and never exceeds,
+ * {@value #DEFAULT_MAX_CONCURRENCY} calls; the
+ * {@code org.jenkinsci.plugins.scm_filter.utils.RateLimitScheduler.maxConcurrency} system property changes this.
+ */
+public final class RateLimitScheduler {
+
+    static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    /**
+     * Calls left to the branch source before the filters wait for the quota to reset.
+     */
+    static final int RESERVE = 100;
+
+    private static final long DEFAULT_PAUSE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_CONCURRENCY = Math.max(
+            1,
+            SystemProperties.getInteger(
+                    RateLimitScheduler.class.getName() + ".maxConcurrency", DEFAULT_MAX_CONCURRENCY));
+
+    private static final Map<String, RateLimitScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    private final int maxConcurrency;
+
+    private final Map<Object, Lane> lanes = new HashMap<>();
+
+    /**
+     * Lanes with waiting calls, in the order they are served.
+     */
+    private final ArrayDeque<Lane> ring = new ArrayDeque<>();
+
+    private double concurrency;
+
+    private int inFlight;
+
+    /**
+     * Whether a response reported the quota, the bucket does not limit anything until then.
+     */
+    private boolean seeded;
+
+    private double tokens;
+
+    private double capacity;
+
+    private double tokensPerMilli;
+
+    private long refilledAt;
+
+    private long resetAt;
+
+    private long pausedUntil;
+
+    RateLimitScheduler(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = maxConcurrency;
+    }
+
+    /**
+     * Gets the scheduler of a credential.
+     *
+     * @param key identifies the credential and the server it is used with
+     * @return the scheduler shared by all calls made with the credential
+     */
+    @NonNull
+    public static RateLimitScheduler of(@NonNull String key) {
+        return SCHEDULERS.computeIfAbsent(key, k -> new RateLimitScheduler(MAX_CONCURRENCY));
+    }
+
+    /**
+     * Waits for the turn of a lane to make a call.
+     *
+     * @param lane identifies the source the call is made for
+     * @return the permit to make the call, to be closed once the call completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @NonNull
+    public Permit acquire(@NonNull Object lane) throws InterruptedException {
+        lock.lock();
+        try {
+            Lane waitingLane = lanes.computeIfAbsent(lane, Lane::new);
+            if (waitingLane.tickets.isEmpty()) {
+                ring.add(waitingLane);
+            }
+            Ticket ticket = new Ticket();
+            waitingLane.tickets.add(ticket);
+            try {
+                while (true) {
+                    long wait = grant(System.currentTimeMillis());
+                    if (ticket.granted) {
+                        return new Permit();
+                    }
+                    if (wait > 0) {
+                        changed.await(wait, TimeUnit.MILLISECONDS);
+                    } else {
+                        changed.await();
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (ticket.granted) {
+                    release();
+                } else {
+                    waitingLane.tickets.remove(ticket);
+                    if (waitingLane.tickets.isEmpty()) {
+                        ring.remove(waitingLane);
+                        lanes.remove(lane);
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grants as many waiting calls as the limits allow, in round robin across lanes.
+     *
+     * @return the delay before another call may be granted, {@code 0} if only a completed call can allow one
+     */
+    private long grant(long now) {
+        refill(now);
+        while (!ring.isEmpty()) {
+            if (now < pausedUntil) {
+                return pausedUntil - now;
+            }
+            if (inFlight >= (int) concurrency) {
+                return 0;
+            }
+            if (seeded && tokens < 1) {
+                if (tokensPerMilli > 0) {
+                    return (long) Math.ceil((1 - tokens) / tokensPerMilli);
+                }
+                return Math.max(1, resetAt - now);
+            }
+            Lane lane = ring.poll();
+            lane.tickets.poll().granted = true;
+            inFlight++;
+            tokens--;
+            if (lane.tickets.isEmpty()) {
+                lanes.remove(lane.key);
+            } else {
+                ring.add(lane);
+            }
+            changed.signalAll();
+        }
+        return 0;
+    }
+
+    private void refill(long now) {
+        if (!seeded) {
+            return;
+        }
+        if (now >= resetAt) {
+            // the quota was renewed, wait for a response to report it
+            seeded = false;
+            return;
+        }
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerMilli);
+        refilledAt = now;
+    }
+
+    private void release() {
+        inFlight--;
+        changed.signalAll();
+    }
+
+    /**
+     * Updates the limits from a response.
+     */
+    void onResponse(int status, @CheckForNull HttpHeaders headers, long now) {
+        OptionalLong remaining = header(headers, "x-ratelimit-remaining", "ratelimit-remaining");
+        OptionalLong reset = header(headers, "x-ratelimit-reset", "ratelimit-reset");
+        OptionalLong retryAfter = header(headers, "retry-after", "retry-after");
+        lock.lock();
+        try {
+            if (remaining.isPresent() && reset.isPresent()) {
+                refill(now);
+                long usable = Math.max(0, remaining.getAsLong() - RESERVE);
+                resetAt = TimeUnit.SECONDS.toMillis(reset.getAsLong());
+                tokensPerMilli = (double) usable / Math.max(1000, resetAt - now);
+                capacity = usable == 0 ? 0 : Math.max(1, usable / 2.0);
+                // the reported quota already accounts for the calls made, it can only lower the tokens
+                tokens = seeded ? Math.min(tokens, capacity) : capacity;
+                refilledAt = now;
+                seeded = true;
+            }
+            // GitHub reports secondary rate limits as 403 with a Retry-After header, GitLab as 429
+            boolean throttled =
+                    status == 429 || status == 403 && (retryAfter.isPresent() || remaining.orElse(-1) == 0);
+            if (throttled) {
+                concurrency = Math.max(1, concurrency / 2);
+                long pause;
+                if (retryAfter.isPresent()) {
+                    pause = TimeUnit.SECONDS.toMillis(retryAfter.getAsLong());
+                } else if (reset.isPresent()) {
+                    pause = TimeUnit.SECONDS.toMillis(reset.getAsLong()) - now;
+                } else {
+                    pause = DEFAULT_PAUSE_MILLIS;
+                }
+                pausedUntil = Math.max(pausedUntil, now + Math.max(0, pause));
+            } else if (status < 400) {
+                concurrency = Math.min(maxConcurrency, concurrency + 1 / concurrency);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static OptionalLong header(@CheckForNull HttpHeaders headers, String name, String alternative) {
+        if (headers == null) {
+            return OptionalLong.empty();
+        }
+        String value = headers.firstValue(name).orElseGet(() -> headers.firstValue(alternative).orElse(null));
+        if (value == null) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            // e.g. an HTTP date in Retry-After
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    int getConcurrency() {
+        lock.lock();
+        try {
+            return (int) concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls waiting for their turn
+     */
+    int getWaiting() {
+        lock.lock();
+        try {
+            int waiting = 0;
+            for (Lane lane : ring) {
+                waiting += lane.tickets.size();
+            }
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The turn of a call, released when closed.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private boolean released;
+
+        private Permit() {}
+
+        /**
+         * Reports the response of the call, adjusting the limits of the credential.
+         *
+         * @param status the HTTP status
+         * @param headers the response headers
+         */
+        public void complete(int status, @NonNull HttpHeaders headers) {
+            onResponse(status, headers, System.currentTimeMillis());
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (!released) {
+                    released = true;
+                    release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Lane {
+
+        private final Object key;
+
+        private final ArrayDeque<Ticket> tickets = new ArrayDeque<>();
+
+        Lane(Object key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Ticket {
+
+        private boolean granted;
+    }
+}
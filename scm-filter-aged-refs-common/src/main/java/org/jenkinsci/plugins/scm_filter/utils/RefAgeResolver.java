@@ -0,0 +1,440 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import jenkins.scm.api.SCMSource;
+
+/**
+ * Resolves the commit date of ref heads from one source of commit dates.
+ * <p>
+ * Filters do not call resolvers directly: the {@link RefTimestampIndex} of their request walks the chain of all
+ * resolvers from the cheapest {@link Cost} to the most expensive one and stops at the first that knows the date. Dates
+ * found by a resolver more expensive than the {@link CommitDateStore} are published to the {@link CommitDateCache},
+ * and lookups reaching these resolvers are shared with concurrent lookups of the same SHA through
+ * {@link InFlightCommitDates}. Prefetches of whole listings go through {@link #resolveAll}, so that resolvers able to
+ * answer many lookups at once do so.
+ * <p>
+ * The resolvers read the listing of the request, the cache of the plugin, its store, the cache repository of the git
+ * plugin and finally the SCM API, through the loader of the provider. The chain is a fixed list internal to this
+ * package rather than an extension point: the common classes are bundled into each provider plugin, whose extensions
+ * would be found through the classes of whichever provider plugin loaded first. Each resolver counts its hits, misses,
+ * failures and the time spent in it.
+ */
+abstract class RefAgeResolver {
+
+    /**
+     * How expensive a resolver is, the chain consults the cheapest ones first.
+     */
+    public enum Cost {
+        /**
+         * Reads what the listing of the request already carries.
+         */
+        LISTING,
+        /**
+         * Reads memory shared by the scans of the plugin.
+         */
+        MEMORY,
+        /**
+         * Reads files on the controller.
+         */
+        PERSISTENT,
+        /**
+         * Reads a local repository.
+         */
+        LOCAL,
+        /**
+         * Calls a server.
+         */
+        REMOTE
+    }
+
+    /**
+     * The resolvers, ordered by increasing cost.
+     */
+    private static final List<RefAgeResolver> CHAIN = List.of(
+            new ListingResolver(),
+            new MemoryResolver(),
+            new PersistentResolver(),
+            new LocalRepositoryResolver(),
+            new RemoteResolver());
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * @return the cost of the resolver
+     */
+    @NonNull
+    public abstract Cost getCost();
+
+    /**
+     * Resolves the commit date of one head.
+     *
+     * @param lookup the head
+     * @return the commit date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if this resolver does not
+     *     know it
+     * @throws IOException if the resolution failed, which ends the walk of the chain
+     * @throws InterruptedException if interrupted while resolving
+     */
+    public abstract long resolve(@NonNull Lookup lookup) throws IOException, InterruptedException;
+
+    /**
+     * Resolves the commit dates of many heads at once. The default implementation resolves them one by one.
+     *
+     * @param lookups the heads
+     * @return the commit dates in epoch milliseconds by SHA, without the heads this resolver does not know
+     * @throws IOException if the resolution failed
+     * @throws InterruptedException if interrupted while resolving
+     */
+    @NonNull
+    public Map<String, Long> resolveAll(@NonNull Collection<Lookup> lookups) throws IOException, InterruptedException {
+        Map<String, Long> dates = new HashMap<>();
+        for (Lookup lookup : lookups) {
+            long date = resolve(lookup);
+            if (date != RefTimestampIndex.UNKNOWN) {
+                dates.put(lookup.getSha(), date);
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * @return the number of heads this resolver knew the date of
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of heads this resolver did not know the date of
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of calls to this resolver that failed
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the time spent in this resolver, in nanoseconds
+     */
+    public long getTotalTimeNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * @return the resolvers of the plugin, ordered by increasing cost
+     */
+    @NonNull
+    static List<RefAgeResolver> chain() {
+        return CHAIN;
+    }
+
+    /**
+     * Resolves the commit date of one head through the chain.
+     *
+     * @param chain the resolvers, ordered by increasing cost
+     * @param lookup the head
+     * @return the commit date in epoch milliseconds or {@link RefTimestampIndex#UNKNOWN} if no resolver knows it
+     * @throws IOException if a resolver failed
+     * @throws InterruptedException if interrupted while resolving
+     */
+    static long resolve(@NonNull List<RefAgeResolver> chain, @NonNull Lookup lookup)
+            throws IOException, InterruptedException {
+        int shared = 0;
+        while (shared < chain.size() && !isShared(chain.get(shared))) {
+            long date = chain.get(shared++).timedResolve(lookup);
+            if (date != RefTimestampIndex.UNKNOWN) {
+                return date;
+            }
+        }
+        if (shared == chain.size()) {
+            return RefTimestampIndex.UNKNOWN;
+        }
+        List<RefAgeResolver> expensive = chain.subList(shared, chain.size());
+        return InFlightCommitDates.load(lookup.getSha(), sha -> {
+            // another lookup may have completed between the cache miss and now
+            long date = CommitDateCache.get().getCachedCommitDate(sha);
+            if (date != RefTimestampIndex.UNKNOWN) {
+                return date;
+            }
+            for (RefAgeResolver resolver : expensive) {
+                date = resolver.timedResolve(lookup);
+                if (date != RefTimestampIndex.UNKNOWN) {
+                    CommitDateCache.get().putCommitDate(sha, date);
+                    return date;
+                }
+            }
+            return RefTimestampIndex.UNKNOWN;
+        });
+    }
+
+    /**
+     * Resolves the commit dates of many heads through the resolvers of the chain cheaper than a given cost, each
+     * resolver being asked at once for all the heads the cheaper ones did not know.
+     *
+     * @param chain the resolvers, ordered by increasing cost
+     * @param lookups the heads
+     * @param below the cost of the first resolver not to consult
+     * @return the commit dates in epoch milliseconds by SHA, without the heads no resolver knows
+     * @throws IOException if a resolver failed
+     * @throws InterruptedException if interrupted while resolving
+     */
+    @NonNull
+    static Map<String, Long> resolveAll(
+            @NonNull List<RefAgeResolver> chain, @NonNull Collection<Lookup> lookups, @NonNull Cost below)
+            throws IOException, InterruptedException {
+        Map<String, Long> dates = new HashMap<>();
+        Map<String, Lookup> pending = new LinkedHashMap<>();
+        for (Lookup lookup : lookups) {
+            pending.putIfAbsent(lookup.getSha(), lookup);
+        }
+        for (RefAgeResolver resolver : chain) {
+            if (pending.isEmpty() || resolver.getCost().compareTo(below) >= 0) {
+                break;
+            }
+            Map<String, Long> resolved = resolver.timedResolveAll(pending.values());
+            for (Map.Entry<String, Long> entry : resolved.entrySet()) {
+                if (pending.remove(entry.getKey()) != null && entry.getValue() != RefTimestampIndex.UNKNOWN) {
+                    dates.put(entry.getKey(), entry.getValue());
+                    if (isShared(resolver)) {
+                        CommitDateCache.get().putCommitDate(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Resolvers more expensive than the store publish their dates to the cache and share their lookups in flight.
+     * Cheaper ones either read the cache already or may read dates that are not commit dates from the listing.
+     */
+    private static boolean isShared(RefAgeResolver resolver) {
+        return resolver.getCost().compareTo(Cost.PERSISTENT) > 0;
+    }
+
+    private long timedResolve(Lookup lookup) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            long date = resolve(lookup);
+            (date != RefTimestampIndex.UNKNOWN ? hits : misses).increment();
+            return date;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private Map<String, Long> timedResolveAll(Collection<Lookup> lookups) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            Map<String, Long> dates = resolveAll(lookups);
+            hits.add(dates.size());
+            misses.add(lookups.size() - dates.size());
+            return dates;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + getCost() + ", " + getHits() + " hits, " + getMisses() + " misses, "
+                + getFailures() + " failures, " + getTotalTimeNanos() / 1_000_000 + " ms]";
+    }
+
+    /**
+     * A head whose commit date is to be resolved.
+     */
+    public static final class Lookup {
+
+        @NonNull
+        private final String sha;
+
+        @CheckForNull
+        private final SCMSource source;
+
+        @CheckForNull
+        private final RefTimestampIndex.Ref ref;
+
+        @CheckForNull
+        private final RefTimestampIndex.CommitDateLoader remote;
+
+        /**
+         * @param sha the head commit SHA
+         * @param source the source of the request, if known
+         * @param ref the listed ref, if any
+         * @param remote fetches the commit date from the SCM API, if the provider can
+         */
+        public Lookup(
+                @NonNull String sha,
+                @CheckForNull SCMSource source,
+                @CheckForNull RefTimestampIndex.Ref ref,
+                @CheckForNull RefTimestampIndex.CommitDateLoader remote) {
+            this.sha = sha;
+            this.source = source;
+            this.ref = ref;
+            this.remote = remote;
+        }
+
+        @NonNull
+        public String getSha() {
+            return sha;
+        }
+
+        @CheckForNull
+        public SCMSource getSource() {
+            return source;
+        }
+
+        @CheckForNull
+        public RefTimestampIndex.Ref getRef() {
+            return ref;
+        }
+
+        @CheckForNull
+        public RefTimestampIndex.CommitDateLoader getRemote() {
+            return remote;
+        }
+    }
+
+    /**
+     * Reads the timestamp the listing of the request gave the ref, or a previous resolution recorded on it.
+     */
+    private static final class ListingResolver extends RefAgeResolver {
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return Cost.LISTING;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) {
+            RefTimestampIndex.Ref ref = lookup.getRef();
+            return ref != null && lookup.getSha().equals(ref.getHash())
+                    ? ref.getTimestamp()
+                    : RefTimestampIndex.UNKNOWN;
+        }
+    }
+
+    /**
+     * Reads the in-memory part of the {@link CommitDateCache}.
+     */
+    private static final class MemoryResolver extends RefAgeResolver {
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return Cost.MEMORY;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) {
+            return CommitDateCache.get().getCachedCommitDate(lookup.getSha());
+        }
+    }
+
+    /**
+     * Reads the {@link CommitDateStore} attached to the {@link CommitDateCache}.
+     */
+    private static final class PersistentResolver extends RefAgeResolver {
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return Cost.PERSISTENT;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) {
+            return CommitDateCache.get().getStoredCommitDate(lookup.getSha());
+        }
+    }
+
+    /**
+     * Reads the cache repository the git plugin keeps for the source, all heads of a source with a single walk.
+     */
+    private static final class LocalRepositoryResolver extends RefAgeResolver {
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return Cost.LOCAL;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) {
+            File repository = LocalCommitDates.getCacheRepository(lookup.getSource());
+            if (repository == null) {
+                return RefTimestampIndex.UNKNOWN;
+            }
+            Long date = LocalCommitDates.getCommitDates(repository, List.of(lookup.getSha()))
+                    .get(lookup.getSha());
+            return date != null ? date : RefTimestampIndex.UNKNOWN;
+        }
+
+        @NonNull
+        @Override
+        public Map<String, Long> resolveAll(@NonNull Collection<Lookup> lookups) {
+            Map<File, List<String>> byRepository = new HashMap<>();
+            Map<SCMSource, File> repositories = new HashMap<>();
+            for (Lookup lookup : lookups) {
+                SCMSource source = lookup.getSource();
+                File repository = source == null
+                        ? null
+                        : repositories.computeIfAbsent(source, LocalCommitDates::getCacheRepository);
+                if (repository != null) {
+                    byRepository
+                            .computeIfAbsent(repository, r -> new ArrayList<>())
+                            .add(lookup.getSha());
+                }
+            }
+            Map<String, Long> dates = new HashMap<>();
+            byRepository.forEach((repository, shas) -> dates.putAll(LocalCommitDates.getCommitDates(repository, shas)));
+            return dates;
+        }
+    }
+
+    /**
+     * Calls the SCM API through the loader of the provider.
+     */
+    private static final class RemoteResolver extends RefAgeResolver {
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return Cost.REMOTE;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) throws IOException, InterruptedException {
+            RefTimestampIndex.CommitDateLoader remote = lookup.getRemote();
+            return remote != null ? remote.load(lookup.getSha()) : RefTimestampIndex.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.trait.SCMSourceRequest;
+
+/**
+ * Request scoped index of the refs listed by a {@link SCMSourceRequest}.
+ * <p>
+ * Each section (branches, pull/merge requests) is built from the request listing the first time a filter consults
+ * it and is then shared by every filter evaluating the same request, turning the per head linear scan of the
+ * listing into a hash lookup. Commit dates are resolved through a chain of ref age resolvers and memoized per
+ * SHA, so refs sharing their head are resolved once; the chain publishes them to the {@link CommitDateCache} of the
+ * plugin, so that its later scans of any source do not resolve them again. The index is weakly keyed on
+ * the request and is discarded together with it.
+ * <p>
+ * Filters may also {@link #prefetchBranches prefetch} the commit dates of a whole section, in which case the heads
+ * the SCM API has to resolve are resolved on the {@link PrefetchExecutor} and resolving a head waits for its pending
+ * prefetch rather than calling the SCM again. That wait is bounded to {@value #PENDING_TIMEOUT_SECONDS} seconds: a
+ * prefetch still queued behind the others by then, or dropped, is resolved directly instead.
+ */
+public final class RefTimestampIndex {
+
+    /**
+     * Timestamp of a ref whose date is not known yet.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    static final int PENDING_TIMEOUT_SECONDS = 30;
+
+    private static final Map<SCMSourceRequest, RefTimestampIndex> INDEXES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Section<String> branches = new Section<>();
+
+    private final Section<Long> pullRequests = new Section<>();
+
+    private final Map<String, Long> commitDates = new HashMap<>();
+
+    /**
+     * Prefetches in flight or completed, by SHA, guarded by {@link #commitDates}.
+     */
+    private final Map<String, Future<Long>> pendingDates = new HashMap<>();
+
+    private final Object prefetchLock = new Object();
+
+    private boolean prefetched;
+
+    private RefTimestampIndex() {}
+
+    /**
+     * Gets the index of a request, creating an empty one on first use.
+     *
+     * @param request the request
+     * @return the index shared by all filters of the request
+     */
+    @NonNull
+    public static RefTimestampIndex of(@NonNull SCMSourceRequest request) {
+        // the index must not reference the request, otherwise the weak key would never be collected
+        return INDEXES.computeIfAbsent(request, r -> new RefTimestampIndex());
+    }
+
+    /**
+     * Finds a branch by name.
+     *
+     * @param name the branch name
+     * @param populator lists the branches of the request, invoked only once per request
+     * @return the indexed branch or {@code null} if the request does not list it
+     * @throws IOException if the listing failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    @CheckForNull
+    public Ref findBranch(@NonNull String name, @NonNull Populator<String> populator)
+            throws IOException, InterruptedException {
+        return branches.find(name, populator);
+    }
+
+    /**
+     * Finds a branch by name, if a filter already listed the branches of the request.
+     *
+     * @param name the branch name
+     * @return the indexed branch or {@code null} if not listed (yet)
+     */
+    @CheckForNull
+    public Ref peekBranch(@NonNull String name) {
+        return branches.peek(name);
+    }
+
+    /**
+     * Finds a pull request (or merge request) by number.
+     *
+     * @param number the pull request number
+     * @param populator lists the pull requests of the request, invoked only once per request
+     * @return the indexed pull request or {@code null} if the request does not list it
+     * @throws IOException if the listing failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    @CheckForNull
+    public Ref findPullRequest(long number, @NonNull Populator<Long> populator)
+            throws IOException, InterruptedException {
+        return pullRequests.find(number, populator);
+    }
+
+    /**
+     * Finds a pull request (or merge request) by number, if a filter already listed the pull requests of the request.
+     *
+     * @param number the pull request number
+     * @return the indexed pull request or {@code null} if not listed (yet)
+     */
+    @CheckForNull
+    public Ref peekPullRequest(long number) {
+        return pullRequests.peek(number);
+    }
+
+    /**
+     * Resolves the head commit date of a listed ref once per SHA for the request, walking the chain of ref age
+     * resolvers from its listing to the SCM API, and records it on the ref.
+     *
+     * @param ref the listed ref
+     * @param source the source of the request, if known
+     * @param remote fetches the commit date from the SCM API, if the provider can
+     * @return the commit date in epoch milliseconds or {@link #UNKNOWN} if no resolver could resolve it
+     * @throws IOException if a resolver failed
+     * @throws InterruptedException if interrupted while resolving
+     */
+    public long resolve(@NonNull Ref ref, @CheckForNull SCMSource source, @CheckForNull CommitDateLoader remote)
+            throws IOException, InterruptedException {
+        String sha = ref.getHash();
+        if (sha == null) {
+            return ref.getTimestamp();
+        }
+        long date = getCommitDate(new RefAgeResolver.Lookup(sha, source, ref, remote));
+        if (date != UNKNOWN) {
+            ref.setTimestamp(date);
+        }
+        return date;
+    }
+
+    /**
+     * Resolves the commit date of a head, walking the {@link RefAgeResolver} chain only if this request did not
+     * resolve nor prefetch it yet.
+     *
+     * @param lookup the head
+     * @return the commit date in epoch milliseconds or {@link #UNKNOWN} if no resolver could resolve it
+     * @throws IOException if a resolver failed
+     * @throws InterruptedException if interrupted while resolving
+     */
+    long getCommitDate(@NonNull RefAgeResolver.Lookup lookup) throws IOException, InterruptedException {
+        String sha = lookup.getSha();
+        Future<Long> pending;
+        synchronized (commitDates) {
+            Long date = commitDates.get(sha);
+            if (date != null) {
+                return date;
+            }
+            pending = pendingDates.get(sha);
+        }
+        if (pending != null) {
+            try {
+                return pending.get(PENDING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not resolve the commit date of " + sha, e.getCause());
+            } catch (CancellationException e) {
+                synchronized (commitDates) {
+                    pendingDates.remove(sha, pending);
+                }
+            } catch (TimeoutException e) {
+                // still queued, a lookup the prefetch already started is joined through InFlightCommitDates
+            }
+        }
+        long date = RefAgeResolver.resolve(RefAgeResolver.chain(), lookup);
+        if (date != UNKNOWN) {
+            synchronized (commitDates) {
+                commitDates.put(sha, date);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Records a commit date obtained by other means than {@link #getCommitDate}, e.g. by a bulk query.
+     *
+     * @param sha the commit SHA
+     * @param date the commit date in epoch milliseconds
+     */
+    public void putCommitDate(@NonNull String sha, long date) {
+        synchronized (commitDates) {
+            commitDates.put(sha, date);
+        }
+        CommitDateCache.get().putCommitDate(sha, date);
+    }
+
+    /**
+     * Starts resolving the commit dates of the listed branches the first time it is requested for the request.
+     * Branches whose date is already known are skipped.
+     *
+     * @param source the source of the request, if known
+     * @param populator lists the branches of the request, invoked only once per request
+     * @param loaders selects the branches to resolve
+     * @throws IOException if the listing failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    public void prefetchBranches(
+            @CheckForNull SCMSource source,
+            @NonNull Populator<String> populator,
+            @NonNull PrefetchLoaders<String> loaders)
+            throws IOException, InterruptedException {
+        prefetch(branches, source, populator, loaders);
+    }
+
+    /**
+     * Starts resolving the commit dates of the listed pull requests the first time it is requested for the request.
+     * Pull requests whose date is already known are skipped.
+     *
+     * @param source the source of the request, if known
+     * @param populator lists the pull requests of the request, invoked only once per request
+     * @param loaders selects the pull requests to resolve
+     * @throws IOException if the listing failed
+     * @throws InterruptedException if interrupted while listing
+     */
+    public void prefetchPullRequests(
+            @CheckForNull SCMSource source, @NonNull Populator<Long> populator, @NonNull PrefetchLoaders<Long> loaders)
+            throws IOException, InterruptedException {
+        prefetch(pullRequests, source, populator, loaders);
+    }
+
+    /**
+     * Resolves the heads of a section with the resolvers cheaper than the SCM API right away, each of them being
+     * asked for all the heads at once, then submits the heads still unknown to the {@link PrefetchExecutor}.
+     */
+    private <K> void prefetch(
+            Section<K> section, @CheckForNull SCMSource source, Populator<K> populator, PrefetchLoaders<K> loaders)
+            throws IOException, InterruptedException {
+        PrefetchExecutor executor = PrefetchExecutor.get();
+        if (executor == null || !section.startPrefetch()) {
+            return;
+        }
+        List<RefAgeResolver.Lookup> lookups = new ArrayList<>();
+        for (Map.Entry<K, Ref> entry : section.list(populator).entrySet()) {
+            Ref ref = entry.getValue();
+            String sha = ref.getHash();
+            if (sha == null || ref.getTimestamp() != UNKNOWN) {
+                continue;
+            }
+            synchronized (commitDates) {
+                if (commitDates.containsKey(sha) || pendingDates.containsKey(sha)) {
+                    continue;
+                }
+            }
+            CommitDateLoader loader = loaders.loaderFor(entry.getKey(), ref);
+            if (loader != null) {
+                lookups.add(new RefAgeResolver.Lookup(sha, source, ref, loader));
+            }
+        }
+        if (lookups.isEmpty()) {
+            return;
+        }
+        List<RefAgeResolver> chain = RefAgeResolver.chain();
+        Map<String, Long> resolved = RefAgeResolver.resolveAll(chain, lookups, RefAgeResolver.Cost.REMOTE);
+        List<RefAgeResolver> remote = new ArrayList<>();
+        for (RefAgeResolver resolver : chain) {
+            if (resolver.getCost() == RefAgeResolver.Cost.REMOTE) {
+                remote.add(resolver);
+            }
+        }
+        synchronized (commitDates) {
+            commitDates.putAll(resolved);
+            for (RefAgeResolver.Lookup lookup : lookups) {
+                String sha = lookup.getSha();
+                if (commitDates.containsKey(sha) || pendingDates.containsKey(sha)) {
+                    continue;
+                }
+                try {
+                    pendingDates.put(sha, executor.submit(() -> {
+                        long date = RefAgeResolver.resolve(remote, lookup);
+                        if (date != UNKNOWN) {
+                            putCommitDate(sha, date);
+                        }
+                        return date;
+                    }));
+                } catch (RejectedExecutionException e) {
+                    // shutting down, the remaining heads are resolved by the filters on the scan thread
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a prefetch of commit dates the first time it is requested for the request.
+     * <p>
+     * Concurrent callers wait for the running prefetch, so that they find its results instead of resolving the same
+     * commits one by one.
+     *
+     * @param prefetch the prefetch to run
+     * @throws IOException if the prefetch failed
+     * @throws InterruptedException if interrupted while prefetching
+     */
+    public void prefetchOnce(@NonNull Prefetch prefetch) throws IOException, InterruptedException {
+        synchronized (prefetchLock) {
+            if (!prefetched) {
+                prefetched = true;
+                prefetch.prefetch(this);
+            }
+        }
+    }
+
+    /**
+     * Fetches the commit dates of many refs at once.
+     */
+    @FunctionalInterface
+    public interface Prefetch {
+        void prefetch(@NonNull RefTimestampIndex index) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Fetches the commit date of a SHA from the SCM.
+     */
+    @FunctionalInterface
+    public interface CommitDateLoader {
+        long load(@NonNull String sha) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Selects the refs of a section to prefetch.
+     *
+     * @param <K> the key type of the section
+     */
+    @FunctionalInterface
+    public interface PrefetchLoaders<K> {
+
+        /**
+         * @param key the branch name or pull request number
+         * @param ref the listed ref, whose date is not known yet
+         * @return the loader resolving the ref head or {@code null} if the ref needs no resolution
+         */
+        @CheckForNull
+        CommitDateLoader loaderFor(@NonNull K key, @NonNull Ref ref);
+    }
+
+    /**
+     * Lists the refs of one section of the index.
+     *
+     * @param <K> the key type of the section
+     */
+    @FunctionalInterface
+    public interface Populator<K> {
+        void populate(@NonNull Builder<K> builder) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Collects the refs of one section of the index.
+     *
+     * @param <K> the key type of the section
+     */
+    public static final class Builder<K> {
+
+        private final Map<K, Ref> refs;
+
+        private Builder(Map<K, Ref> refs) {
+            this.refs = refs;
+        }
+
+        /**
+         * Adds a ref to the index. An unknown timestamp is looked up in the {@link CommitDateCache}, as the head commit
+         * date.
+         *
+         * @param key the branch name or pull request number
+         * @param hash the head revision hash, if known
+         * @param timestamp the head timestamp in epoch milliseconds or {@link #UNKNOWN} if it has to be resolved later
+         * @param source the listing object the ref was created from, if it is needed to resolve the timestamp
+         */
+        public void add(@NonNull K key, @CheckForNull String hash, long timestamp, @CheckForNull Object source) {
+            if (hash != null && timestamp == UNKNOWN) {
+                timestamp = CommitDateCache.get().getCommitDate(hash);
+            }
+            refs.putIfAbsent(key, new Ref(hash, timestamp, source));
+        }
+
+        /**
+         * Adds a ref whose listing carries the date of its head commit, publishing it to the {@link CommitDateCache}.
+         *
+         * @param key the branch name or pull request number
+         * @param hash the head commit hash
+         * @param commitDate the head commit date in epoch milliseconds
+         * @param source the listing object the ref was created from, if needed later
+         */
+        public void addCommit(@NonNull K key, @CheckForNull String hash, long commitDate, @CheckForNull Object source) {
+            CommitDateCache.get().putCommitDate(hash, commitDate);
+            refs.putIfAbsent(key, new Ref(hash, commitDate, source));
+        }
+    }
+
+    /**
+     * A ref listed by the request.
+     */
+    public static final class Ref {
+
+        @CheckForNull
+        private final String hash;
+
+        @CheckForNull
+        private final Object source;
+
+        private volatile long timestamp;
+
+        private Ref(@CheckForNull String hash, long timestamp, @CheckForNull Object source) {
+            this.hash = hash;
+            this.timestamp = timestamp;
+            this.source = source;
+        }
+
+        @CheckForNull
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the head timestamp in epoch milliseconds or {@link #UNKNOWN} if not resolved yet
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Records the resolved head timestamp so that later filters of the request do not resolve it again.
+         *
+         * @param timestamp the head timestamp in epoch milliseconds
+         */
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @CheckForNull
+        public <T> T getSource(@NonNull Class<T> type) {
+            return type.isInstance(source) ? type.cast(source) : null;
+        }
+    }
+
+    private static final class Section<K> {
+
+        @CheckForNull
+        private Map<K, Ref> refs;
+
+        private boolean prefetched;
+
+        synchronized Ref find(K key, Populator<K> populator) throws IOException, InterruptedException {
+            return list(populator).get(key);
+        }
+
+        synchronized Map<K, Ref> list(Populator<K> populator) throws IOException, InterruptedException {
+            if (refs == null) {
+                Map<K, Ref> listed = new HashMap<>();
+                populator.populate(new Builder<>(listed));
+                refs = listed;
+            }
+            return refs;
+        }
+
+        /**
+         * @return whether the caller is the first to prefetch the section
+         */
+        synchronized boolean startPrefetch() {
+            boolean first = !prefetched;
+            prefetched = true;
+            return first;
+        }
+
+        @CheckForNull
+        synchronized Ref peek(K key) {
+            return refs == null ? null : refs.get(key);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Set;
+
+/**
+ * Recognizes the requests targeting a few heads, such as the scans processing an event or the scan of a single branch
+ * job, so that the filters only index, prefetch and resolve those heads instead of the whole listing.
+ * <p>
+ * The branch sources expose the heads a request targets as sets of branch names and pull request numbers, {@code null}
+ * when all heads of a kind are requested. Their element types differ, keys are compared through their string form.
+ */
+public final class TargetedHeads {
+
+    /**
+     * Largest number of heads for which resolving each head is cheaper than resolving all heads in bulk.
+     */
+    static final int MAX_HEADS = 10;
+
+    private TargetedHeads() {}
+
+    /**
+     * @param requested the requested heads of a kind, {@code null} if all are requested
+     * @param key the branch name or pull request number of a listed head
+     * @return whether the head is requested
+     */
+    public static boolean isRequested(@CheckForNull Set<?> requested, @NonNull Object key) {
+        if (requested == null) {
+            return true;
+        }
+        String name = key.toString();
+        for (Object r : requested) {
+            if (name.equals(String.valueOf(r))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param requested the requested heads of each kind the request fetches, {@code null} if all are requested
+     * @return whether the request targets few enough heads to resolve them one by one
+     */
+    public static boolean isTargeted(Set<?>... requested) {
+        int heads = 0;
+        for (Set<?> kind : requested) {
+            if (kind == null) {
+                return false;
+            }
+            heads += kind.size();
+        }
+        return heads <= MAX_HEADS;
+    }
+}
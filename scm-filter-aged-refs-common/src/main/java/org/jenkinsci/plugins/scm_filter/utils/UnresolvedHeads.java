@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+
+/**
+ * Decides the heads whose age could not be resolved: they keep their {@linkplain HeadDecisions#getLastKnownGood last
+ * known good} decision if it still applies, so that an outage of the server does not include, and build, every head
+ * it previously excluded. Heads that moved since are never excluded from a previous decision, nor are heads without
+ * one.
+ * <p>
+ * The first such head of a request is reported in the scan log together with this policy, the others only in the
+ * controller log, so that a degraded server does not flood the scan log.
+ */
+public final class UnresolvedHeads {
+
+    private static final Logger LOGGER = Logger.getLogger(UnresolvedHeads.class.getName());
+
+    private static final Map<SCMSourceRequest, Boolean> REPORTED = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private UnresolvedHeads() {}
+
+    /**
+     * Decides a head whose age could not be resolved.
+     *
+     * @param request the request
+     * @param decisions the decisions of the source
+     * @param head the head
+     * @param hash the current head hash, {@code null} if not known
+     * @param ageSource what the age of the head is taken from
+     * @param threshold the acceptable date time threshold
+     * @param cause the lookup failure
+     * @return whether the head is excluded
+     */
+    public static boolean decide(
+            @NonNull SCMSourceRequest request,
+            @NonNull HeadDecisions decisions,
+            @NonNull SCMHead head,
+            @CheckForNull String hash,
+            @NonNull PullRequestAgeSource ageSource,
+            long threshold,
+            @NonNull IOException cause) {
+        Boolean lastKnownGood = decisions.getLastKnownGood(HeadDecisions.keyOf(head), hash, ageSource, threshold);
+        if (REPORTED.putIfAbsent(request, Boolean.TRUE) == null) {
+            request.listener()
+                    .getLogger()
+                    .println("Could not resolve the age of " + head.getName() + " (" + cause.getMessage()
+                            + "), heads whose age cannot be resolved keep their last decision if they did not move"
+                            + " or are not excluded");
+        }
+        boolean excluded = Boolean.TRUE.equals(lastKnownGood);
+        LOGGER.log(
+                Level.FINE,
+                "Could not resolve the age of " + head.getName() + ", "
+                        + (lastKnownGood == null ? "no applicable decision, " : "last decision, ")
+                        + (excluded ? "excluding it" : "not excluding it"),
+                cause);
+        return excluded;
+    }
+}
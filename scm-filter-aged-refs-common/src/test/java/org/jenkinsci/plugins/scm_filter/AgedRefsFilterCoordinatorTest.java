@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jenkins.plugins.git.GitSCMSource;
+import jenkins.plugins.git.GitSCMSourceContext;
+import jenkins.plugins.git.GitTagSCMHead;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.trait.SCMHeadFilter;
+import jenkins.scm.api.trait.SCMHeadPrefilter;
+import jenkins.scm.api.trait.SCMSourceContext;
+import jenkins.scm.api.trait.SCMSourceRequest;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.jenkinsci.plugins.scm_filter.enums.RefType;
+import org.junit.jupiter.api.Test;
+
+class AgedRefsFilterCoordinatorTest {
+
+    private final SCMSourceContext<?, ?> context = new GitSCMSourceContext<>(null, SCMHeadObserver.none());
+
+    @Test
+    void registersSingleFilterPerContext() {
+        AgedRefsFilterCoordinator.register(context, new RecordingFilter(10, null), RefType.BRANCH);
+        AgedRefsFilterCoordinator.register(context, new RecordingFilter(30, null), RefType.values());
+
+        assertThat(context.filters()).hasSize(1);
+        assertThat(context.prefilters()).hasSize(1);
+    }
+
+    @Test
+    void evaluatesStrictestFilterOnly() throws Exception {
+        RecordingFilter branches = new RecordingFilter(10, null);
+        RecordingFilter refs = new RecordingFilter(30, null);
+        AgedRefsFilterCoordinator.register(context, branches, RefType.BRANCH);
+        AgedRefsFilterCoordinator.register(context, refs, RefType.values());
+        SCMHeadFilter filter = context.filters().get(0);
+
+        filter.isExcluded(null, new SCMHead("main"));
+        filter.isExcluded(null, new GitTagSCMHead("v1", System.currentTimeMillis()));
+
+        assertThat(branches.seen).containsExactly("main");
+        assertThat(refs.seen).containsExactly("v1");
+    }
+
+    @Test
+    void keepsStrictestPullRequestFilterPerAgeSource() {
+        RecordingFilter updated = new RecordingFilter(10, PullRequestAgeSource.UPDATED_AT);
+        RecordingFilter headCommit = new RecordingFilter(20, PullRequestAgeSource.HEAD_COMMIT);
+        RecordingFilter lenient = new RecordingFilter(30, PullRequestAgeSource.UPDATED_AT);
+        AgedRefsFilterCoordinator.register(context, updated, RefType.PULL_REQUEST);
+        AgedRefsFilterCoordinator.register(context, headCommit, RefType.values());
+        AgedRefsFilterCoordinator.register(context, lenient, RefType.values());
+
+        AgedRefsFilterCoordinator coordinator = AgedRefsFilterCoordinator.of(context);
+        assertThat(coordinator.strictest(RefType.PULL_REQUEST)).containsExactly(updated, headCommit);
+        assertThat(coordinator.strictest(RefType.BRANCH)).containsExactly(headCommit);
+    }
+
+    @Test
+    void prefiltersTagsWithStrictestThreshold() {
+        AgedRefsFilterCoordinator.register(context, new RecordingFilter(30, null), RefType.values());
+        AgedRefsFilterCoordinator.register(context, new RecordingFilter(10, null), RefType.TAG);
+        SCMHeadPrefilter prefilter = context.prefilters().get(0);
+        long twentyDaysAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(20);
+
+        assertThat(prefilter.isExcluded(null, new GitTagSCMHead("v1", twentyDaysAgo))).isTrue();
+        assertThat(prefilter.isExcluded(null, new SCMHead("main"))).isFalse();
+    }
+
+    @Test
+    void bindsFiltersToSourceOfContext() {
+        RecordingFilter branches = new RecordingFilter(10, null);
+        RecordingFilter tags = new RecordingFilter(10, null);
+        AgedRefsFilterCoordinator.register(context, branches, RefType.BRANCH);
+        AgedRefsFilterCoordinator.register(context, tags, RefType.TAG);
+        GitSCMSource source = new GitSCMSource("https://git.example.com/repo.git");
+
+        assertThat(branches.getSource()).isNull();
+        context.prefilters().get(0).isExcluded(source, new SCMHead("main"));
+
+        assertThat(branches.getSource()).isSameAs(source);
+        assertThat(tags.getSource()).isSameAs(source);
+    }
+
+    @Test
+    void ignoresUncoveredTypes() throws Exception {
+        RecordingFilter tags = new RecordingFilter(10, null);
+        AgedRefsFilterCoordinator.register(context, tags, RefType.TAG);
+
+        assertThat(context.filters().get(0).isExcluded(null, new SCMHead("main"))).isFalse();
+        assertThat(tags.seen).isEmpty();
+    }
+
+    private static final class RecordingFilter extends AgedRefsSCMHeadFilter {
+
+        private final List<String> seen = new ArrayList<>();
+
+        RecordingFilter(int retentionDays, PullRequestAgeSource pullRequestAgeSource) {
+            super(retentionDays, pullRequestAgeSource);
+        }
+
+        @Override
+        protected boolean isHeadExcluded(@NonNull SCMSourceRequest request, @NonNull SCMHead head) {
+            seen.add(head.getName());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.jenkinsci.plugins.scm_filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jenkins.plugins.git.GitTagSCMHead;
+import jenkins.scm.api.SCMHead;
+import org.junit.jupiter.api.Test;
+
+class AgedTagsSCMHeadPrefilterTest {
+
+    private final AgedTagsSCMHeadPrefilter prefilter = new AgedTagsSCMHeadPrefilter(1000L);
+
+    @Test
+    void excludesAgedTags() {
+        assertThat(prefilter.isExcluded(null, new GitTagSCMHead("v1", 999L))).isTrue();
+        assertThat(prefilter.isExcluded(null, new GitTagSCMHead("v2", 1000L))).isFalse();
+    }
+
+    @Test
+    void ignoresOtherHeads() {
+        assertThat(prefilter.isExcluded(null, new SCMHead("main"))).isFalse();
+    }
+}
@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class CommitDateCacheTest {
+
+    private static final long DATE = Instant.parse("2024-01-01T10:00:00.123Z").toEpochMilli();
+
+    private static String randomSha() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(
+                Locale.ROOT, "%016x%016x%08x", random.nextLong(), random.nextLong(), random.nextInt());
+    }
+
+    @Test
+    void putAndGet() {
+        CommitDateCache cache = new CommitDateCache(1024);
+        String sha = "6104942438c14ec7bd21c6cd5bd995272b3faff6";
+        assertThat(cache.getCommitDate(sha)).isEqualTo(RefTimestampIndex.UNKNOWN);
+
+        cache.putCommitDate(sha, DATE);
+
+        // commit dates have a precision of one second
+        assertThat(cache.getCommitDate(sha)).isEqualTo(Instant.parse("2024-01-01T10:00:00Z").toEpochMilli());
+        assertThat(cache.getCommitDate(sha.toUpperCase(Locale.ROOT))).isEqualTo(cache.getCommitDate(sha));
+        assertThat(cache.getCommitDate("6104942438c14ec7bd21c6cd5bd995272b3faff7"))
+                .isEqualTo(RefTimestampIndex.UNKNOWN);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresUnsupportedEntries() {
+        CommitDateCache cache = new CommitDateCache(1024);
+        cache.putCommitDate(null, DATE);
+        cache.putCommitDate("6104942438c1", DATE);
+        cache.putCommitDate("zz04942438c14ec7bd21c6cd5bd995272b3faff6", DATE);
+        cache.putCommitDate("6104942438c14ec7bd21c6cd5bd995272b3faff6", RefTimestampIndex.UNKNOWN);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getCommitDate(null)).isEqualTo(RefTimestampIndex.UNKNOWN);
+    }
+
+    @Test
+    void boundedSize() {
+        CommitDateCache cache = new CommitDateCache(1024);
+        for (int i = 0; i < 10_000; i++) {
+            cache.putCommitDate(randomSha(), DATE);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(cache.getCapacity());
+        String recent = randomSha();
+        cache.putCommitDate(recent, DATE);
+        assertThat(cache.getCommitDate(recent)).isNotEqualTo(RefTimestampIndex.UNKNOWN);
+    }
+
+    @Test
+    void concurrentAccess() throws Exception {
+        CommitDateCache cache = new CommitDateCache(1 << 16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String sha = randomSha();
+                        long date = ThreadLocalRandom.current().nextLong(0, 4_000_000_000L) * 1000;
+                        cache.putCommitDate(sha, date);
+                        long cached = cache.getCommitDate(sha);
+                        if (cached != date && cached != RefTimestampIndex.UNKNOWN) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
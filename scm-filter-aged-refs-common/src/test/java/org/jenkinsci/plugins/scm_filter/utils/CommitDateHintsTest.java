@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class CommitDateHintsTest {
+
+    private static final String SHA = "6104942438c14ec7bd21c6cd5bd995272b3faff6";
+
+    private static final long DATE = Instant.parse("2024-01-01T10:00:00Z").toEpochMilli();
+
+    private static final long NOW = Instant.parse("2024-01-02T10:00:00Z").toEpochMilli();
+
+    @Test
+    void keepsRecentHeadsOnly() {
+        CommitDateHints hints = new CommitDateHints();
+        hints.put("Owner/Repo", SHA, DATE, NOW);
+
+        assertThat(hints.isRecent("owner/repo", SHA.toUpperCase(Locale.ROOT), DATE, NOW))
+                .isTrue();
+        // an old hinted date never excludes the head, it is resolved instead
+        assertThat(hints.isRecent("owner/repo", SHA, DATE + 1, NOW)).isFalse();
+        assertThat(hints.isRecent("owner/repo", null, DATE, NOW)).isFalse();
+        assertThat(hints.isRecent(null, SHA, DATE, NOW)).isFalse();
+    }
+
+    @Test
+    void scopesHintsToRepository() {
+        CommitDateHints hints = new CommitDateHints();
+        hints.put("owner/repo", SHA, DATE, NOW);
+
+        assertThat(hints.isRecent("owner/other", SHA, DATE, NOW)).isFalse();
+        assertThat(hints.isRecent("other/repo", SHA, DATE, NOW)).isFalse();
+    }
+
+    @Test
+    void expiresHints() {
+        CommitDateHints hints = new CommitDateHints();
+        hints.put("owner/repo", SHA, DATE, NOW);
+        long expiry = NOW + TimeUnit.MINUTES.toMillis(CommitDateHints.TTL_MINUTES);
+
+        assertThat(hints.isRecent("owner/repo", SHA, DATE, expiry - 1)).isTrue();
+        assertThat(hints.isRecent("owner/repo", SHA, DATE, expiry)).isFalse();
+    }
+
+    @Test
+    void boundsHints() {
+        CommitDateHints hints = new CommitDateHints();
+        for (int i = 0; i <= CommitDateHints.CAPACITY; i++) {
+            hints.put("owner/repo", String.format(Locale.ROOT, "%040x", i), DATE, NOW);
+        }
+
+        assertThat(hints.size()).isEqualTo(CommitDateHints.CAPACITY);
+        assertThat(hints.isRecent("owner/repo", String.format(Locale.ROOT, "%040x", 0), DATE, NOW))
+                .isFalse();
+        assertThat(hints.isRecent("owner/repo", String.format(Locale.ROOT, "%040x", 1), DATE, NOW))
+                .isTrue();
+    }
+}
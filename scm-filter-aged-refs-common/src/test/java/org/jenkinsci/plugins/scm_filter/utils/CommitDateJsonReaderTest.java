@@ -0,0 +1,86 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class CommitDateJsonReaderTest {
+
+    private long read(String file, String... path) throws IOException {
+        try (InputStream res = getClass().getResourceAsStream(getClass().getSimpleName() + "/" + file)) {
+            return CommitDateJsonReader.readDate(res, path);
+        }
+    }
+
+    private static long parse(String json, String... path) throws IOException {
+        return CommitDateJsonReader.readDate(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), path);
+    }
+
+    @Test
+    void readGitHubCommitterDate() throws IOException {
+        assertThat(read("github_git_commit.json", "committer", "date"))
+                .isEqualTo(Instant.parse("2014-11-08T09:30:00Z").toEpochMilli());
+    }
+
+    @Test
+    void readGitLabCommittedDate() throws IOException {
+        assertThat(read("gitlab_commit.json", "committed_date"))
+                .isEqualTo(Instant.parse("2012-09-20T06:06:12Z").toEpochMilli());
+    }
+
+    @Test
+    void missingDate() throws IOException {
+        assertThat(parse("{}", "committed_date")).isEqualTo(RefTimestampIndex.UNKNOWN);
+        assertThat(parse("{\"committer\": null}", "committer", "date")).isEqualTo(RefTimestampIndex.UNKNOWN);
+        assertThat(parse("{\"committer\": {\"name\": \"a\"}, \"date\": \"2014-11-08T09:30:00Z\"}", "committer", "date"))
+                .isEqualTo(RefTimestampIndex.UNKNOWN);
+    }
+
+    @Test
+    void stopsReadingAtTheDate() throws IOException {
+        // everything after the date is left unread, even if it is not valid JSON
+        assertThat(parse("{\"committed_date\": \"2012-09-20T09:06:12.000+03:00\", \"stats\": {{{", "committed_date"))
+                .isEqualTo(Instant.parse("2012-09-20T06:06:12Z").toEpochMilli());
+    }
+
+    @Test
+    void readGitLabCommitListing() throws IOException {
+        String json = "[{\"id\": \"ed899a2f4b50b4370feeea94676502b42383c746\", \"parent_ids\": [\"6104942\"],"
+                + " \"committed_date\": \"2012-09-20T09:06:12.000+03:00\", \"trailers\": {}},"
+                + " {\"committed_date\": null, \"id\": \"6104942438c14ec7bd21c6cd5bd995272b3faff6\"},"
+                + " {\"committed_date\": \"2012-09-20T06:06:12Z\", \"web_url\": null,"
+                + " \"id\": \"0b4bc9a49b562e85de7cc9e834518ea6828729b9\"}]";
+
+        assertThat(CommitDateJsonReader.readDates(
+                        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "id", "committed_date"))
+                .containsExactly(
+                        Map.entry(
+                                "ed899a2f4b50b4370feeea94676502b42383c746",
+                                Instant.parse("2012-09-20T06:06:12Z").toEpochMilli()),
+                        Map.entry(
+                                "0b4bc9a49b562e85de7cc9e834518ea6828729b9",
+                                Instant.parse("2012-09-20T06:06:12Z").toEpochMilli()));
+        assertThat(CommitDateJsonReader.readDates(
+                        new ByteArrayInputStream("[ ]".getBytes(StandardCharsets.UTF_8)), "id", "committed_date"))
+                .isEmpty();
+    }
+
+    @Test
+    void malformedDocument() {
+        assertThatThrownBy(() -> parse("{\"committed_date\": \"yesterday\"}", "committed_date"))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parse("{\"id\": \"6104942", "committed_date")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> CommitDateJsonReader.readDates(
+                        new ByteArrayInputStream("{\"message\": \"404\"}".getBytes(StandardCharsets.UTF_8)),
+                        "id",
+                        "committed_date"))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommitDateStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static long[] randomKey() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return CommitDateCache.parse(String.format(
+                Locale.ROOT, "%016x%016x%08x", random.nextLong(), random.nextLong(), random.nextInt()));
+    }
+
+    @Test
+    void survivesReopen() throws IOException {
+        long[][] keys = new long[1000][];
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = randomKey();
+                store.append(keys[i], 1_700_000_000_000L + i);
+            }
+            // appended entries are looked up in the cache until the next compaction
+            assertThat(store.getCommitDate(keys[0])).isEqualTo(RefTimestampIndex.UNKNOWN);
+        }
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            assertThat(store.getLogSize()).isZero();
+            assertThat(store.getBaseSize()).isEqualTo(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                assertThat(store.getCommitDate(keys[i])).isEqualTo(1_700_000_000_000L + i);
+            }
+            assertThat(store.getCommitDate(randomKey())).isEqualTo(RefTimestampIndex.UNKNOWN);
+        }
+    }
+
+    @Test
+    void compactionMergesGenerations() throws IOException {
+        long[] first = randomKey();
+        long[] second = randomKey();
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            store.append(first, 1000L);
+            store.compact();
+            store.append(second, 2000L);
+            store.append(first, 1000L);
+            store.compact();
+            assertThat(store.getBaseSize()).isEqualTo(2);
+            assertThat(store.getCommitDate(first)).isEqualTo(1000L);
+            assertThat(store.getCommitDate(second)).isEqualTo(2000L);
+        }
+        try (var files = Files.list(dir)) {
+            assertThat(files.map(f -> f.getFileName().toString()))
+                    .containsExactlyInAnyOrder("base-2.dat", "append.log");
+        }
+    }
+
+    @Test
+    void recoversFromTornWrite() throws IOException {
+        long[] compacted = randomKey();
+        long[] intact = randomKey();
+        long[] torn = randomKey();
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            store.append(compacted, 1000L);
+        }
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            store.append(intact, 2000L);
+            store.append(torn, 3000L);
+        }
+        // simulate a crash in the middle of writing the last record
+        Path log = dir.resolve("append.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(2 * CommitDateStore.RECORD_SIZE - 5);
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), CommitDateStore.RECORD_SIZE + 20);
+        }
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            assertThat(store.getLogSize()).isZero();
+            assertThat(store.getBaseSize()).isEqualTo(2);
+            assertThat(store.getCommitDate(compacted)).isEqualTo(1000L);
+            assertThat(store.getCommitDate(intact)).isEqualTo(2000L);
+            assertThat(store.getCommitDate(torn)).isEqualTo(RefTimestampIndex.UNKNOWN);
+        }
+        assertThat(Files.size(log)).isZero();
+    }
+
+    @Test
+    void discardsIncompleteBase() throws IOException {
+        long[] key = randomKey();
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            store.append(key, 1000L);
+        }
+        // an interrupted compaction leaves a newer, incomplete generation behind
+        Files.write(dir.resolve("base-7.dat"), new byte[] {0x53, 0x46, 0x41, 0x52, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 9});
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            assertThat(store.getCommitDate(key)).isEqualTo(1000L);
+        }
+        assertThat(dir.resolve("base-7.dat")).doesNotExist();
+    }
+
+    @Test
+    void cacheReadsThrough() throws IOException {
+        String sha = "6104942438c14ec7bd21c6cd5bd995272b3faff6";
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            CommitDateCache cache = new CommitDateCache(1024);
+            cache.setStore(store);
+            cache.putCommitDate(sha, 1_700_000_000_123L);
+        }
+        try (CommitDateStore store = CommitDateStore.open(dir)) {
+            CommitDateCache cache = new CommitDateCache(1024);
+            cache.setStore(store);
+            assertThat(cache.getCommitDate(sha)).isEqualTo(1_700_000_000_000L);
+            assertThat(cache.size()).isEqualTo(1);
+        }
+    }
+}
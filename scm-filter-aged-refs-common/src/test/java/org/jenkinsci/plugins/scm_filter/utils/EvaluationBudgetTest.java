@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class EvaluationBudgetTest {
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+    private final StreamTaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+
+    @Test
+    void unlimitedEvaluatesOnTheScanThread() throws Exception {
+        Thread scanThread = Thread.currentThread();
+
+        boolean excluded = EvaluationBudget.UNLIMITED
+                .start()
+                .evaluate(listener, "main", () -> Thread.currentThread() == scanThread, () -> false);
+
+        assertThat(excluded).isTrue();
+    }
+
+    @Test
+    void decidesFromCachedAgeWhenHeadRunsOver() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        EvaluationBudget budget = new EvaluationBudget(100, 0, false);
+
+        boolean excluded = budget.start().evaluate(listener, "main", () -> {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return false;
+        }, () -> true);
+
+        assertThat(excluded).isTrue();
+        assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(log.toString(StandardCharsets.UTF_8))
+                .contains("Could not evaluate the age of main", "excluding it from its cached age");
+    }
+
+    @Test
+    void decidesByDefaultWithoutCachedAge() throws Exception {
+        EvaluationBudget budget = new EvaluationBudget(100, 0, true);
+
+        boolean excluded = budget.start().evaluate(listener, "main", () -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            return false;
+        }, () -> null);
+
+        assertThat(excluded).isTrue();
+        assertThat(log.toString(StandardCharsets.UTF_8)).contains("excluding it by default");
+    }
+
+    @Test
+    void stopsEvaluatingOnceScanBudgetIsSpent() throws Exception {
+        EvaluationBudget budget = new EvaluationBudget(0, 50, false);
+        EvaluationBudget.Scan scan = budget.start();
+        AtomicInteger evaluations = new AtomicInteger();
+        Thread.sleep(100);
+
+        assertThat(scan.evaluate(listener, "main", () -> evaluations.incrementAndGet() > 0, () -> null))
+                .isFalse();
+        assertThat(scan.evaluate(listener, "feature", () -> evaluations.incrementAndGet() > 0, () -> true))
+                .isTrue();
+
+        assertThat(evaluations.get()).isZero();
+        assertThat(log.toString(StandardCharsets.UTF_8).split("scan budget", -1)).hasSize(2);
+    }
+
+    @Test
+    void evaluatesAgainAfterShutdown() throws Exception {
+        Thread scanThread = Thread.currentThread();
+        EvaluationBudget budget = new EvaluationBudget(TimeUnit.SECONDS.toMillis(10), 0, false);
+        EvaluationBudget.shutdown();
+
+        boolean excluded =
+                budget.start().evaluate(listener, "main", () -> Thread.currentThread() != scanThread, () -> null);
+
+        assertThat(excluded).isTrue();
+    }
+
+    @Test
+    void reportsEvaluationFailures() {
+        EvaluationBudget budget = new EvaluationBudget(TimeUnit.SECONDS.toMillis(10), 0, false);
+
+        assertThatThrownBy(() -> budget.start().evaluate(listener, "main", () -> {
+                    throw new IOException("HTTP 404");
+                }, () -> null))
+                .isInstanceOf(IOException.class)
+                .hasMessage("HTTP 404");
+    }
+}
@@ -0,0 +1,157 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import hudson.XmlFile;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.jenkinsci.plugins.scm_filter.enums.PullRequestAgeSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HeadDecisionsTest {
+
+    private static final String SHA = "6104942438c14ec7bd21c6cd5bd995272b3faff6";
+
+    private static final String MOVED = "ae1d9fb46aa2b07ee9836d49862ec4e2c46fbbba";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exactDecision() {
+        HeadDecisions decisions = new HeadDecisions(null);
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L))
+                .isNull();
+
+        decisions.record("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 500L))
+                .isFalse();
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isTrue();
+        assertThat(decisions.isExcluded("main", MOVED, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.COMMIT_HISTORY, 2000L))
+                .isNull();
+        assertThat(decisions.isExcluded("main", null, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+    }
+
+    @Test
+    void changeRequestDecidedWhateverTheStrategy() {
+        HeadDecisions decisions = new HeadDecisions(null);
+        String merge = HeadDecisions.changeRequestKey("1", ChangeRequestCheckoutStrategy.MERGE);
+        decisions.record(merge, SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+
+        assertThat(merge).isNotEqualTo(HeadDecisions.changeRequestKey("1", ChangeRequestCheckoutStrategy.HEAD));
+        assertThat(decisions.isChangeRequestExcluded("1", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isTrue();
+        assertThat(decisions.isChangeRequestExcluded("1", MOVED, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+        assertThat(decisions.isChangeRequestExcluded("2", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+        assertThat(HeadDecisions.keyOf(new SCMHead("main"))).isEqualTo("main");
+    }
+
+    @Test
+    void lowerBoundOnlyConfirmsInclusion() {
+        HeadDecisions decisions = new HeadDecisions(null);
+        decisions.record("PR-1", SHA, PullRequestAgeSource.COMMIT_HISTORY, 1000L, false);
+
+        assertThat(decisions.isExcluded("PR-1", SHA, PullRequestAgeSource.COMMIT_HISTORY, 500L))
+                .isFalse();
+        assertThat(decisions.isExcluded("PR-1", SHA, PullRequestAgeSource.COMMIT_HISTORY, 2000L))
+                .isNull();
+    }
+
+    @Test
+    void ignoresUnknownCommitTime() {
+        HeadDecisions decisions = new HeadDecisions(null);
+        decisions.record("main", SHA, PullRequestAgeSource.HEAD_COMMIT, RefTimestampIndex.UNKNOWN, true);
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+    }
+
+    @Test
+    void lastKnownGood() {
+        HeadDecisions decisions = new HeadDecisions(null);
+        long now = System.currentTimeMillis();
+        long maxStaleness = TimeUnit.HOURS.toMillis(1);
+        PullRequestAgeSource head = PullRequestAgeSource.HEAD_COMMIT;
+        PullRequestAgeSource history = PullRequestAgeSource.COMMIT_HISTORY;
+        assertThat(decisions.getLastKnownGood("main", SHA, head, 2000L, now, maxStaleness))
+                .isNull();
+
+        decisions.record("main", SHA, head, 1000L, true);
+        decisions.record("PR-1", SHA, history, 1000L, false);
+
+        // an unmoved head keeps its decision, however old
+        assertThat(decisions.getLastKnownGood("main", SHA, head, 2000L, now, maxStaleness))
+                .isTrue();
+        assertThat(decisions.getLastKnownGood("main", SHA, head, 2000L, now + 2 * maxStaleness, maxStaleness))
+                .isTrue();
+        // a moved head only keeps an inclusion
+        assertThat(decisions.getLastKnownGood("main", MOVED, head, 2000L, now, maxStaleness))
+                .isNull();
+        assertThat(decisions.getLastKnownGood("main", null, head, 2000L, now, maxStaleness))
+                .isNull();
+        assertThat(decisions.getLastKnownGood("main", MOVED, head, 500L, now, maxStaleness))
+                .isFalse();
+        assertThat(decisions.getLastKnownGood("PR-1", MOVED, history, 2000L, now, maxStaleness))
+                .isFalse();
+        assertThat(decisions.getLastKnownGood("main", SHA, history, 2000L, now, maxStaleness))
+                .isNull();
+        // too old to stand in for the moved head
+        assertThat(decisions.getLastKnownGood("main", MOVED, head, 500L, now + 4 * maxStaleness, maxStaleness))
+                .isNull();
+    }
+
+    @Test
+    void persisted() {
+        XmlFile file = new XmlFile(HeadDecisions.XSTREAM, dir.resolve("decisions.xml").toFile());
+        long now = System.currentTimeMillis();
+        HeadDecisions decisions = new HeadDecisions(file);
+        decisions.record("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+        decisions.record("PR-1", MOVED, PullRequestAgeSource.COMMIT_HISTORY, 1000L, false);
+        decisions.save(now);
+
+        HeadDecisions restored = HeadDecisions.read(file);
+        assertThat(restored.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isTrue();
+        assertThat(restored.isExcluded("PR-1", MOVED, PullRequestAgeSource.COMMIT_HISTORY, 500L))
+                .isFalse();
+
+        // decisions not confirmed for long are dropped on save
+        restored.record("feature", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+        restored.save(now + TimeUnit.DAYS.toMillis(365));
+        assertThat(HeadDecisions.read(file).isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+    }
+
+    @Test
+    void confirmationPostponesExpiry() {
+        XmlFile file = new XmlFile(HeadDecisions.XSTREAM, dir.resolve("decisions.xml").toFile());
+        long now = System.currentTimeMillis();
+        long days = TimeUnit.DAYS.toMillis(1);
+        HeadDecisions decisions = new HeadDecisions(file);
+        decisions.record("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+        decisions.record("feature", SHA, PullRequestAgeSource.HEAD_COMMIT, 1000L, true);
+        decisions.save(now);
+
+        // only main is found unmoved by later scans
+        assertThat(decisions.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L, now + 60 * days))
+                .isTrue();
+        assertThat(decisions.isExcluded("feature", MOVED, PullRequestAgeSource.HEAD_COMMIT, 2000L, now + 60 * days))
+                .isNull();
+        decisions.save(now + 100 * days);
+
+        HeadDecisions restored = HeadDecisions.read(file);
+        assertThat(restored.isExcluded("main", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isTrue();
+        assertThat(restored.isExcluded("feature", SHA, PullRequestAgeSource.HEAD_COMMIT, 2000L))
+                .isNull();
+    }
+}
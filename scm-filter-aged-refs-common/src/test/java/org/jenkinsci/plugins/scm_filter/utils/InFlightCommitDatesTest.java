@@ -0,0 +1,150 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class InFlightCommitDatesTest {
+
+    private static final int THREADS = 32;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdown() {
+        InFlightCommitDates.joinListener = null;
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sharesLookupInFlight() throws Exception {
+        String sha = "b2a6e5b1c8f0d4e3a7c9b1d2e4f6a8c0b2d4e6f8";
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RefTimestampIndex.CommitDateLoader loader = s -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return 1000L;
+        };
+        Future<Long> leader = executor.submit(() -> InFlightCommitDates.load(sha, loader));
+        started.await();
+        CountDownLatch joined = new CountDownLatch(THREADS - 1);
+        InFlightCommitDates.joinListener = joined::countDown;
+        List<Future<Long>> followers = new ArrayList<>();
+        for (int i = 0; i < THREADS - 1; i++) {
+            followers.add(executor.submit(() -> InFlightCommitDates.load(sha, loader)));
+        }
+        joined.await();
+        release.countDown();
+
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo(1000L);
+        for (Future<Long> follower : followers) {
+            assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo(1000L);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(InFlightCommitDates.size()).isZero();
+    }
+
+    @Test
+    void joinedCallersRunTheirOwnLookupOnFailure() throws Exception {
+        String sha = "c3b7f6c2d9a1e5f4b8d0c2e3f5a7b9d1c3e5f7a9";
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = executor.submit(() -> InFlightCommitDates.load(sha, s -> {
+            started.countDown();
+            release.await();
+            // e.g. the credentials of the leader cannot read the repository
+            throw new IOException("HTTP 403");
+        }));
+        started.await();
+        CountDownLatch joined = new CountDownLatch(1);
+        InFlightCommitDates.joinListener = joined::countDown;
+        AtomicInteger loads = new AtomicInteger();
+        Future<Long> follower = executor.submit(() -> InFlightCommitDates.load(sha, s -> {
+            loads.incrementAndGet();
+            return 2000L;
+        }));
+        joined.await();
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo(2000L);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(InFlightCommitDates.size()).isZero();
+    }
+
+    @Test
+    void joinedCallersRunTheirOwnLookupWhenNotFound() throws Exception {
+        String sha = "d4c8a7d3e0b2f6a5c9e1d3f4a6b8c0e2d4f6a8b0";
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = executor.submit(() -> InFlightCommitDates.load(sha, s -> {
+            started.countDown();
+            release.await();
+            return RefTimestampIndex.UNKNOWN;
+        }));
+        started.await();
+        CountDownLatch joined = new CountDownLatch(1);
+        InFlightCommitDates.joinListener = joined::countDown;
+        Future<Long> follower = executor.submit(() -> InFlightCommitDates.load(sha, s -> 3000L));
+        joined.await();
+        release.countDown();
+
+        assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo(RefTimestampIndex.UNKNOWN);
+        assertThat(follower.get(10, TimeUnit.SECONDS)).isEqualTo(3000L);
+    }
+
+    @Test
+    void staysConsistentUnderContention() throws Exception {
+        String[] shas = new String[8];
+        for (int i = 0; i < shas.length; i++) {
+            shas[i] = String.format("%040x", i + 1);
+        }
+        AtomicInteger loads = new AtomicInteger();
+        RefTimestampIndex.CommitDateLoader loader = s -> {
+            loads.incrementAndGet();
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+            return Long.parseLong(s, 16) * 1000;
+        };
+        int lookupsPerThread = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                int mismatches = 0;
+                for (int i = 0; i < lookupsPerThread; i++) {
+                    String sha = shas[ThreadLocalRandom.current().nextInt(shas.length)];
+                    if (InFlightCommitDates.load(sha, loader) != Long.parseLong(sha, 16) * 1000) {
+                        mismatches++;
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        start.countDown();
+
+        for (Future<Integer> worker : workers) {
+            assertThat(worker.get(60, TimeUnit.SECONDS)).isZero();
+        }
+        assertThat(loads.get()).isLessThan(THREADS * lookupsPerThread);
+        assertThat(InFlightCommitDates.size()).isZero();
+    }
+}
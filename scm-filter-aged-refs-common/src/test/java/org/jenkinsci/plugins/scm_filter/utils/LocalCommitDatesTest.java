@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.FS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalCommitDatesTest {
+
+    private static final Instant AUTHORED = Instant.parse("2026-09-01T10:00:00Z");
+
+    private static final Instant COMMITTED = Instant.parse("2026-10-01T10:00:00Z");
+
+    @TempDir
+    private Path dir;
+
+    @AfterEach
+    void closeRepositories() {
+        RepositoryCache.clear();
+    }
+
+    @Test
+    void readsCommitterDates() throws Exception {
+        RevCommit commit;
+        try (Git git = Git.init().setDirectory(dir.resolve("remote").toFile()).call()) {
+            commit = commit(git, "Initial commit");
+        }
+        File gitDir = fetch();
+
+        Map<String, Long> dates = LocalCommitDates.getCommitDates(gitDir, List.of(commit.name()));
+
+        assertThat(dates).containsExactly(Map.entry(commit.name(), COMMITTED.toEpochMilli()));
+    }
+
+    @Test
+    void leavesOutCommitsNotFetched() throws Exception {
+        RevCommit commit;
+        try (Git git = Git.init().setDirectory(dir.resolve("remote").toFile()).call()) {
+            commit = commit(git, "Initial commit");
+        }
+        File gitDir = fetch();
+
+        Map<String, Long> dates = LocalCommitDates.getCommitDates(
+                gitDir, List.of("0123456789abcdef0123456789abcdef01234567", commit.getTree().name(), "main"));
+
+        assertThat(dates).isEmpty();
+    }
+
+    @Test
+    void readsCommitGraph() throws Exception {
+        RevCommit first;
+        RevCommit second;
+        try (Git git = Git.init().setDirectory(dir.resolve("remote").toFile()).call()) {
+            first = commit(git, "Initial commit");
+            second = commit(git, "Second commit");
+        }
+        File gitDir = fetch();
+        try (Git git = Git.open(gitDir)) {
+            StoredConfig config = git.getRepository().getConfig();
+            config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+            config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_WRITE_COMMIT_GRAPH, true);
+            git.gc().call();
+        }
+        assertThat(new File(gitDir, "objects/info/commit-graph")).exists();
+
+        Map<String, Long> dates = LocalCommitDates.getCommitDates(gitDir, List.of(first.name(), second.name()));
+
+        assertThat(dates)
+                .containsEntry(first.name(), COMMITTED.toEpochMilli())
+                .containsEntry(second.name(), COMMITTED.toEpochMilli());
+    }
+
+    @Test
+    void leavesCachedRepositoryConfigUntouched() throws Exception {
+        RevCommit commit;
+        try (Git git = Git.init().setDirectory(dir.resolve("remote").toFile()).call()) {
+            commit = commit(git, "Initial commit");
+        }
+        File gitDir = fetch();
+        Repository cached = RepositoryCache.open(RepositoryCache.FileKey.exact(gitDir, FS.DETECTED), true);
+
+        try {
+            assertThat(LocalCommitDates.getCommitDates(gitDir, List.of(commit.name())))
+                    .containsOnlyKeys(commit.name());
+            assertThat(cached.getConfig()
+                            .getString(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH))
+                    .isNull();
+        } finally {
+            cached.close();
+        }
+    }
+
+    @Test
+    void listsFetchedBranches() throws Exception {
+        RevCommit first;
+        RevCommit second;
+        try (Git git = Git.init()
+                .setDirectory(dir.resolve("remote").toFile())
+                .setInitialBranch("main")
+                .call()) {
+            first = commit(git, "Initial commit");
+            git.branchCreate().setName("feature").call();
+            second = commit(git, "Second commit");
+        }
+        File gitDir = dir.resolve("cache.git").toFile();
+        try (Git git = Git.init().setBare(true).setGitDir(gitDir).call()) {
+            git.fetch()
+                    .setRemote(dir.resolve("remote").toUri().toString())
+                    .setRefSpecs("+refs/heads/*:refs/remotes/origin/*")
+                    .call();
+        }
+
+        Map<String, String> refs = LocalCommitDates.getRefs(gitDir, "refs/remotes/origin/");
+
+        assertThat(refs)
+                .hasSize(2)
+                .containsEntry("feature", first.name())
+                .containsEntry("main", second.name());
+    }
+
+    /**
+     * Clones the remote into a bare repository, like the git plugin fetches into its cache repositories.
+     */
+    private File fetch() throws Exception {
+        File gitDir = dir.resolve("cache.git").toFile();
+        Git.cloneRepository()
+                .setBare(true)
+                .setURI(dir.resolve("remote").toUri().toString())
+                .setDirectory(gitDir)
+                .call()
+                .close();
+        return gitDir;
+    }
+
+    private static RevCommit commit(Git git, String message) throws Exception {
+        return git.commit()
+                .setMessage(message)
+                .setAllowEmpty(true)
+                .setAuthor(new PersonIdent("Jane Doe", "jane@example.com", AUTHORED, ZoneOffset.UTC))
+                .setCommitter(new PersonIdent("John Doe", "john@example.com", COMMITTED, ZoneOffset.UTC))
+                .call();
+    }
+}
@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class LookupRetryTest {
+
+    @Test
+    void retriesTransientFailures() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        long date = LookupRetry.call("https://retries.example/commits", () -> {
+            if (calls.incrementAndGet() < LookupRetry.MAX_ATTEMPTS) {
+                throw new HttpStatusException(502, "HTTP 502");
+            }
+            return 1000L;
+        });
+
+        assertThat(date).isEqualTo(1000L);
+        assertThat(calls.get()).isEqualTo(LookupRetry.MAX_ATTEMPTS);
+    }
+
+    @Test
+    void reportsOtherStatusesAtOnce() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> LookupRetry.call("https://not-found.example/commits", () -> {
+                    calls.incrementAndGet();
+                    throw new HttpStatusException(404, "HTTP 404");
+                }))
+                .isInstanceOf(HttpStatusException.class);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(CircuitBreaker.of("https://not-found.example/commits").isOpen()).isFalse();
+    }
+
+    @Test
+    void failsFastOnceTheBreakerIsOpen() throws Exception {
+        String endpoint = "https://degraded.example/commits";
+        AtomicInteger calls = new AtomicInteger();
+        LookupRetry.Lookup<Long> failing = () -> {
+            calls.incrementAndGet();
+            throw new IOException("Connection reset");
+        };
+        while (!CircuitBreaker.of(endpoint).isOpen()) {
+            assertThatThrownBy(() -> LookupRetry.call(endpoint, failing)).isInstanceOf(IOException.class);
+        }
+        assertThat(calls.get()).isEqualTo(CircuitBreaker.FAILURE_THRESHOLD);
+
+        assertThatThrownBy(() -> LookupRetry.call(endpoint, failing)).isInstanceOf(CircuitOpenException.class);
+        assertThat(calls.get()).isEqualTo(CircuitBreaker.FAILURE_THRESHOLD);
+    }
+
+    @Test
+    void letsASingleTrialThroughOnceOpenLongEnough() {
+        CircuitBreaker breaker = new CircuitBreaker("https://recovering.example/commits");
+        long now = 0;
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            assertThat(breaker.tryAcquire(now)).isTrue();
+            breaker.onFailure(now);
+        }
+        assertThat(breaker.tryAcquire(now + CircuitBreaker.OPEN_MILLIS - 1)).isFalse();
+
+        now += CircuitBreaker.OPEN_MILLIS;
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        assertThat(breaker.tryAcquire(now)).isFalse();
+        breaker.onFailure(now);
+        assertThat(breaker.tryAcquire(now + CircuitBreaker.OPEN_MILLIS - 1)).isFalse();
+
+        now += CircuitBreaker.OPEN_MILLIS;
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(breaker.tryAcquire(now)).isTrue();
+    }
+
+    @Test
+    void spreadsBackoffWithinTheExponentialDelay() {
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long delay = Math.min(LookupRetry.MAX_DELAY_MILLIS, LookupRetry.BASE_DELAY_MILLIS << (attempt - 1));
+            assertThat(LookupRetry.backoff(attempt)).isBetween(delay / 2, delay);
+        }
+    }
+}
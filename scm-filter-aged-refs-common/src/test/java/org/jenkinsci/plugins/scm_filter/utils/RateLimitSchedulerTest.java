@@ -0,0 +1,109 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.http.HttpHeaders;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimitSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void grantsLanesInRoundRobin() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(1);
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> calls = new ArrayList<>();
+        try (RateLimitScheduler.Permit held = scheduler.acquire("other")) {
+            String[][] queued = {{"a", "a1"}, {"a", "a2"}, {"a", "a3"}, {"b", "b1"}};
+            for (String[] call : queued) {
+                int waiting = scheduler.getWaiting();
+                calls.add(executor.submit(() -> {
+                    try (RateLimitScheduler.Permit permit = scheduler.acquire(call[0])) {
+                        granted.add(call[1]);
+                    }
+                    return null;
+                }));
+                while (scheduler.getWaiting() == waiting) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        for (Future<?> call : calls) {
+            call.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(granted).containsExactly("a1", "b1", "a2", "a3");
+    }
+
+    @Test
+    void halvesConcurrencyOnSecondaryRateLimit() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(8);
+        long now = System.currentTimeMillis();
+
+        scheduler.onResponse(403, headers(Map.of("Retry-After", "0")), now);
+        assertThat(scheduler.getConcurrency()).isEqualTo(4);
+        scheduler.onResponse(429, headers(Map.of()), now);
+        assertThat(scheduler.getConcurrency()).isEqualTo(2);
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.onResponse(200, headers(Map.of()), now);
+        }
+        assertThat(scheduler.getConcurrency()).isEqualTo(8);
+    }
+
+    @Test
+    void ignoresPlainForbiddenResponses() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(8);
+
+        scheduler.onResponse(403, headers(Map.of()), System.currentTimeMillis());
+
+        assertThat(scheduler.getConcurrency()).isEqualTo(8);
+    }
+
+    @Test
+    void waitsForQuotaReset() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(8);
+        long now = System.currentTimeMillis();
+        long reset = TimeUnit.MILLISECONDS.toSeconds(now) + 2;
+        scheduler.onResponse(
+                200,
+                headers(Map.of(
+                        "X-RateLimit-Remaining",
+                        String.valueOf(RateLimitScheduler.RESERVE),
+                        "X-RateLimit-Reset",
+                        String.valueOf(reset))),
+                now);
+
+        Future<?> call = executor.submit(() -> {
+            scheduler.acquire("a").close();
+            return null;
+        });
+
+        assertThatThrownBy(() -> call.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        call.get(10, TimeUnit.SECONDS);
+    }
+
+    private static HttpHeaders headers(Map<String, String> values) {
+        Map<String, List<String>> multi = new HashMap<>();
+        values.forEach((name, value) -> multi.put(name, List.of(value)));
+        return HttpHeaders.of(multi, (name, value) -> true);
+    }
+}
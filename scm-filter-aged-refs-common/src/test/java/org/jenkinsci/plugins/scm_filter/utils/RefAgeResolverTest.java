@@ -0,0 +1,163 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class RefAgeResolverTest {
+
+    private static final long DATE = Instant.parse("2024-01-01T10:00:00Z").toEpochMilli();
+
+    private static String randomSha() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(
+                Locale.ROOT, "%016x%016x%08x", random.nextLong(), random.nextLong(), random.nextInt());
+    }
+
+    private static RefAgeResolver.Lookup lookup(String sha) {
+        return new RefAgeResolver.Lookup(sha, null, null, null);
+    }
+
+    @Test
+    void chainsResolversByCost() {
+        assertThat(RefAgeResolver.chain())
+                .extracting(RefAgeResolver::getCost)
+                .containsExactly(RefAgeResolver.Cost.values());
+    }
+
+    @Test
+    void stopsAtCheapestResolverKnowingDate() throws Exception {
+        String sha = randomSha();
+        FakeResolver listing = new FakeResolver(RefAgeResolver.Cost.LISTING);
+        FakeResolver local = new FakeResolver(RefAgeResolver.Cost.LOCAL, Map.of(sha, DATE));
+        FakeResolver remote = new FakeResolver(RefAgeResolver.Cost.REMOTE, Map.of(sha, DATE + 1000));
+
+        long date = RefAgeResolver.resolve(List.of(listing, local, remote), lookup(sha));
+
+        assertThat(date).isEqualTo(DATE);
+        assertThat(listing.getMisses()).isEqualTo(1);
+        assertThat(local.getHits()).isEqualTo(1);
+        assertThat(remote.calls).isEmpty();
+        // published, so that the next lookup of any request stops at the memory
+        assertThat(CommitDateCache.get().getCommitDate(sha)).isEqualTo(DATE);
+    }
+
+    @Test
+    void doesNotPublishListingDates() throws Exception {
+        String sha = randomSha();
+        FakeResolver listing = new FakeResolver(RefAgeResolver.Cost.LISTING, Map.of(sha, DATE));
+
+        assertThat(RefAgeResolver.resolve(List.of(listing), lookup(sha))).isEqualTo(DATE);
+        assertThat(CommitDateCache.get().getCommitDate(sha)).isEqualTo(RefTimestampIndex.UNKNOWN);
+    }
+
+    @Test
+    void unknownWhenNoResolverKnowsDate() throws Exception {
+        FakeResolver local = new FakeResolver(RefAgeResolver.Cost.LOCAL);
+        FakeResolver remote = new FakeResolver(RefAgeResolver.Cost.REMOTE);
+
+        assertThat(RefAgeResolver.resolve(List.of(local, remote), lookup(randomSha())))
+                .isEqualTo(RefTimestampIndex.UNKNOWN);
+        assertThat(local.getMisses()).isEqualTo(1);
+        assertThat(remote.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void countsFailures() {
+        FakeResolver remote = new FakeResolver(RefAgeResolver.Cost.REMOTE) {
+            @Override
+            public long resolve(@NonNull RefAgeResolver.Lookup lookup) throws IOException {
+                throw new IOException("Server error");
+            }
+        };
+
+        assertThatThrownBy(() -> RefAgeResolver.resolve(List.of(remote), lookup(randomSha())))
+                .isInstanceOf(IOException.class);
+        assertThat(remote.getFailures()).isEqualTo(1);
+        assertThat(remote.getHits()).isZero();
+    }
+
+    @Test
+    void resolvesAllAtOnceBelowCost() throws Exception {
+        String cached = randomSha();
+        String fetched = randomSha();
+        String missing = randomSha();
+        FakeResolver memory = new FakeResolver(RefAgeResolver.Cost.MEMORY, Map.of(cached, DATE));
+        FakeResolver local = new FakeResolver(RefAgeResolver.Cost.LOCAL, Map.of(fetched, DATE, cached, DATE + 1000));
+        FakeResolver remote = new FakeResolver(RefAgeResolver.Cost.REMOTE, Map.of(missing, DATE));
+
+        Map<String, Long> dates = RefAgeResolver.resolveAll(
+                List.of(memory, local, remote),
+                List.of(lookup(cached), lookup(fetched), lookup(missing), lookup(fetched)),
+                RefAgeResolver.Cost.REMOTE);
+
+        assertThat(dates).hasSize(2).containsEntry(cached, DATE).containsEntry(fetched, DATE);
+        assertThat(memory.calls).containsExactly(List.of(cached, fetched, missing));
+        // asked once for the heads the cheaper resolvers did not know
+        assertThat(local.calls).containsExactly(List.of(fetched, missing));
+        assertThat(remote.calls).isEmpty();
+        assertThat(local.getHits()).isEqualTo(1);
+        assertThat(local.getMisses()).isEqualTo(1);
+    }
+
+    private static class FakeResolver extends RefAgeResolver {
+
+        private final Cost cost;
+
+        private final Map<String, Long> dates;
+
+        final List<List<String>> calls = new ArrayList<>();
+
+        FakeResolver(Cost cost) {
+            this(cost, Map.of());
+        }
+
+        FakeResolver(Cost cost, Map<String, Long> dates) {
+            this.cost = cost;
+            this.dates = dates;
+        }
+
+        @NonNull
+        @Override
+        public Cost getCost() {
+            return cost;
+        }
+
+        @Override
+        public long resolve(@NonNull Lookup lookup) throws IOException {
+            calls.add(List.of(lookup.getSha()));
+            return dates.getOrDefault(lookup.getSha(), RefTimestampIndex.UNKNOWN);
+        }
+
+        @NonNull
+        @Override
+        public Map<String, Long> resolveAll(@NonNull Collection<Lookup> lookups) {
+            List<String> shas = new ArrayList<>();
+            Map<String, Long> resolved = new HashMap<>();
+            for (Lookup lookup : lookups) {
+                shas.add(lookup.getSha());
+                if (dates.containsKey(lookup.getSha())) {
+                    resolved.put(lookup.getSha(), dates.get(lookup.getSha()));
+                }
+            }
+            calls.add(shas);
+            return resolved;
+        }
+
+        @Override
+        public String toString() {
+            return cost.name();
+        }
+    }
+}
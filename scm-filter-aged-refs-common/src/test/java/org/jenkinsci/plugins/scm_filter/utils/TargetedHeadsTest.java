@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.scm_filter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TargetedHeadsTest {
+
+    @Test
+    void allHeadsRequestedWithoutRequestedSet() {
+        assertThat(TargetedHeads.isRequested(null, "main")).isTrue();
+        assertThat(TargetedHeads.isRequested(null, 42L)).isTrue();
+    }
+
+    @Test
+    void comparesKeysOfAnyType() {
+        assertThat(TargetedHeads.isRequested(Set.of("main"), "main")).isTrue();
+        assertThat(TargetedHeads.isRequested(Set.of("main"), "feature")).isFalse();
+        assertThat(TargetedHeads.isRequested(Set.of(42), 42L)).isTrue();
+        assertThat(TargetedHeads.isRequested(Set.of("42"), 42)).isTrue();
+        assertThat(TargetedHeads.isRequested(Set.of(), "main")).isFalse();
+    }
+
+    @Test
+    void targetsFewHeadsOfEveryKind() {
+        Set<Integer> many = new HashSet<>();
+        for (int i = 0; i <= TargetedHeads.MAX_HEADS; i++) {
+            many.add(i);
+        }
+
+        assertThat(TargetedHeads.isTargeted(Set.of("main"), Set.of(42))).isTrue();
+        assertThat(TargetedHeads.isTargeted(Set.of("main"), null)).isFalse();
+        assertThat(TargetedHeads.isTargeted(Set.of(), many)).isFalse();
+    }
+}